@@ -0,0 +1,226 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Base of iterative parallelism: splits index range into blocks according to the selected {@link Partitioning}
+ * and runs them either on {@link ParallelMapper} or on threads of the selected {@link Backend}.
+ */
+public abstract class AbstractParallelism {
+
+    /**
+     * Runs blocks of work when there is no {@link ParallelMapper}. The caller always runs the first block itself.
+     */
+    public enum Backend {
+        /**
+         * New platform thread for every block.
+         */
+        THREADS,
+        /**
+         * Shared pool of daemon platform threads, which are reused between calls.
+         */
+        POOLED,
+        /**
+         * New virtual thread for every block.
+         */
+        VIRTUAL,
+        /**
+         * {@link ForkJoinPool#commonPool()}.
+         */
+        FORK_JOIN
+    }
+
+    /**
+     * How index range is split between threads.
+     */
+    public enum Partitioning {
+        /**
+         * One contiguous block of almost equal size per thread.
+         */
+        STATIC,
+        /**
+         * Threads claim chunks from a shared cursor until all of them are processed, so threads with cheap
+         * elements take more chunks. Chunk size is a multiple of {@link #CACHE_LINE_ELEMENTS}
+         * and every thread gets about {@link #CHUNKS_PER_THREAD} chunks.
+         */
+        DYNAMIC
+    }
+
+    private static final int CACHE_LINE_ELEMENTS = 16;
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private static class Pools {
+        private static final ExecutorService POOLED = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        private static final ExecutorService VIRTUAL = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Work on indices {@code [from, to)} of one block.
+     */
+    protected interface Block<P> {
+        P apply(int from, int to);
+    }
+
+    private final ParallelMapper parallelMapper;
+    private final ExecutorService executor;
+    private final Partitioning partitioning;
+
+    protected AbstractParallelism(final Backend backend, final Partitioning partitioning) {
+        this.parallelMapper = null;
+        this.executor = switch (backend) {
+            case THREADS -> null;
+            case POOLED -> Pools.POOLED;
+            case VIRTUAL -> Pools.VIRTUAL;
+            case FORK_JOIN -> ForkJoinPool.commonPool();
+        };
+        this.partitioning = partitioning;
+    }
+
+    protected AbstractParallelism(final ParallelMapper parallelMapper, final Partitioning partitioning) {
+        this.parallelMapper = parallelMapper;
+        this.executor = null;
+        this.partitioning = partitioning;
+    }
+
+    /**
+     * Returns {@code true} if blocks run on reused threads, so dispatching them is cheap.
+     * {@link Backend#THREADS} starts new platform threads for every call instead.
+     */
+    protected boolean reusesThreads() {
+        return parallelMapper != null || executor != null;
+    }
+
+    /**
+     * Splits {@code [0, size)} into blocks according to the selected {@link Partitioning}, applies {@code block}
+     * to each of them in parallel and passes results in block order to {@code collector}.
+     */
+    protected <P, U> U parallelRunning(int threadsCount,
+                                       int size,
+                                       Block<P> block,
+                                       Function<List<P>, U> collector) throws InterruptedException {
+        return parallelRunning(threadsCount, size, block, collector, partitioning);
+    }
+
+    protected <P, U> U parallelRunning(int threadsCount,
+                                       int size,
+                                       Block<P> block,
+                                       Function<List<P>, U> collector,
+                                       Partitioning partitioning) throws InterruptedException {
+        if (partitioning == Partitioning.DYNAMIC) {
+            return dynamicRunning(threadsCount, size, block, collector);
+        }
+        int blocks = Math.min(threadsCount, size);
+        int blockSize = blocks > 0 ? size / blocks : 0;
+        int tailSize = blocks > 0 ? size % blocks : 0;
+        return collector.apply(run(blocks, index -> {
+            int from = blockSize * index + Math.min(index, tailSize);
+            return block.apply(from, from + blockSize + ((index < tailSize) ? 1 : 0));
+        }));
+    }
+
+    private <P, U> U dynamicRunning(int threadsCount,
+                                    int size,
+                                    Block<P> block,
+                                    Function<List<P>, U> collector) throws InterruptedException {
+        if (threadsCount <= 0 || size == 0) {
+            return collector.apply(List.of());
+        }
+        long perChunk = (size + (long) threadsCount * CHUNKS_PER_THREAD - 1) / ((long) threadsCount * CHUNKS_PER_THREAD);
+        int chunkSize = (int) Math.max(CACHE_LINE_ELEMENTS,
+                (perChunk + CACHE_LINE_ELEMENTS - 1) / CACHE_LINE_ELEMENTS * CACHE_LINE_ELEMENTS);
+        int chunks = (int) (((long) size + chunkSize - 1) / chunkSize);
+        Object[] results = new Object[chunks];
+        AtomicInteger cursor = new AtomicInteger();
+        run(Math.min(threadsCount, chunks), index -> {
+            int chunk;
+            while ((chunk = cursor.getAndIncrement()) < chunks) {
+                int from = chunk * chunkSize;
+                results[chunk] = block.apply(from, (int) Math.min(size, (long) from + chunkSize));
+            }
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        List<P> list = (List<P>) Arrays.asList(results);
+        return collector.apply(list);
+    }
+
+    /**
+     * Applies {@code function} to indices {@code [0, tasks)} in parallel and returns results in index order.
+     */
+    private <P> List<P> run(int tasks, Function<Integer, P> function) throws InterruptedException {
+        if (parallelMapper != null) {
+            return parallelMapper.map(function, IntStream.range(0, tasks).boxed().toList());
+        }
+        if (executor != null) {
+            return runOnExecutor(tasks, function);
+        }
+        List<P> results = new ArrayList<>(Collections.nCopies(tasks, null));
+        List<Thread> threadList = IntStream.range(0, tasks).mapToObj(index -> new Thread(
+                () -> results.set(index, function.apply(index))
+        )).toList();
+        threadList.forEach(Thread::start);
+        boolean isInterrupted = false;
+        InterruptedException exception = new InterruptedException("");
+        for (int i = 0; i < threadList.size(); i++) {
+            try {
+                threadList.get(i).join();
+            } catch (InterruptedException e) {
+                exception.addSuppressed(e);
+                if (!isInterrupted) {
+                    for (int j = i; j < threadList.size(); j++) {
+                        threadList.get(j).interrupt();
+                    }
+                    isInterrupted = true;
+                }
+                // :NOTE: join
+            }
+        }
+        if (isInterrupted) {
+            throw exception;
+        }
+        return results;
+    }
+
+    private <P> List<P> runOnExecutor(int blocks, Function<Integer, P> function) throws InterruptedException {
+        if (blocks == 0) {
+            return List.of();
+        }
+        List<Future<P>> futures = IntStream.range(1, blocks)
+                .mapToObj(index -> executor.submit(() -> function.apply(index)))
+                .toList();
+        List<P> results = new ArrayList<>(blocks);
+        try {
+            results.add(function.apply(0));
+            for (Future<P> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        return results;
+    }
+}
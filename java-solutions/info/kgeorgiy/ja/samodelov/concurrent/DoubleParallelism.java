@@ -0,0 +1,124 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Counterpart of {@link IterativeParallelism} for {@code double[]}, which doesn't box elements.
+ * Only one partial result per block is boxed.
+ */
+public class DoubleParallelism extends AbstractParallelism {
+
+    public DoubleParallelism() {
+        this(Backend.THREADS);
+    }
+
+    public DoubleParallelism(final Backend backend) {
+        this(backend, Partitioning.STATIC);
+    }
+
+    public DoubleParallelism(final Backend backend, final Partitioning partitioning) {
+        super(backend, partitioning);
+    }
+
+    public DoubleParallelism(final ParallelMapper parallelMapper) {
+        this(parallelMapper, Partitioning.STATIC);
+    }
+
+    public DoubleParallelism(final ParallelMapper parallelMapper, final Partitioning partitioning) {
+        super(parallelMapper, partitioning);
+    }
+
+    public OptionalDouble maximum(int threads, double[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of(reduce(threads, values, Double.NEGATIVE_INFINITY, Math::max));
+    }
+
+    public OptionalDouble minimum(int threads, double[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of(reduce(threads, values, Double.POSITIVE_INFINITY, Math::min));
+    }
+
+    public int count(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    int count = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            count++;
+                        }
+                    }
+                    return count;
+                },
+                counts -> counts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    public double[] filter(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    double[] block = new double[to - from];
+                    int size = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            block[size++] = values[i];
+                        }
+                    }
+                    return Arrays.copyOf(block, size);
+                },
+                DoubleParallelism::concat);
+    }
+
+    private static double[] concat(List<double[]> blocks) {
+        double[] result = new double[blocks.stream().mapToInt(block -> block.length).sum()];
+        int position = 0;
+        for (double[] block : blocks) {
+            System.arraycopy(block, 0, result, position, block.length);
+            position += block.length;
+        }
+        return result;
+    }
+
+    public double[] map(int threads, double[] values, DoubleUnaryOperator f) throws InterruptedException {
+        double[] result = new double[values.length];
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        result[i] = f.applyAsDouble(values[i]);
+                    }
+                    return null;
+                },
+                blocks -> result);
+    }
+
+    public double reduce(int threads, double[] values, double identity,
+                         DoubleBinaryOperator operator) throws InterruptedException {
+        return mapReduce(threads, values, DoubleUnaryOperator.identity(), identity, operator);
+    }
+
+    public double mapReduce(int threads, double[] values, DoubleUnaryOperator lift,
+                            double identity, DoubleBinaryOperator operator) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    double result = identity;
+                    for (int i = from; i < to; i++) {
+                        result = operator.applyAsDouble(result, lift.applyAsDouble(values[i]));
+                    }
+                    return result;
+                },
+                blocks -> {
+                    double result = identity;
+                    for (double block : blocks) {
+                        result = operator.applyAsDouble(result, block);
+                    }
+                    return result;
+                });
+    }
+}
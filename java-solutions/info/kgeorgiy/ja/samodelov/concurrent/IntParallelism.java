@@ -0,0 +1,124 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Counterpart of {@link IterativeParallelism} for {@code int[]}, which doesn't box elements.
+ * Only one partial result per block is boxed.
+ */
+public class IntParallelism extends AbstractParallelism {
+
+    public IntParallelism() {
+        this(Backend.THREADS);
+    }
+
+    public IntParallelism(final Backend backend) {
+        this(backend, Partitioning.STATIC);
+    }
+
+    public IntParallelism(final Backend backend, final Partitioning partitioning) {
+        super(backend, partitioning);
+    }
+
+    public IntParallelism(final ParallelMapper parallelMapper) {
+        this(parallelMapper, Partitioning.STATIC);
+    }
+
+    public IntParallelism(final ParallelMapper parallelMapper, final Partitioning partitioning) {
+        super(parallelMapper, partitioning);
+    }
+
+    public OptionalInt maximum(int threads, int[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalInt.empty()
+                : OptionalInt.of(reduce(threads, values, Integer.MIN_VALUE, Math::max));
+    }
+
+    public OptionalInt minimum(int threads, int[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalInt.empty()
+                : OptionalInt.of(reduce(threads, values, Integer.MAX_VALUE, Math::min));
+    }
+
+    public int count(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    int count = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            count++;
+                        }
+                    }
+                    return count;
+                },
+                counts -> counts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    public int[] filter(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    int[] block = new int[to - from];
+                    int size = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            block[size++] = values[i];
+                        }
+                    }
+                    return Arrays.copyOf(block, size);
+                },
+                IntParallelism::concat);
+    }
+
+    private static int[] concat(List<int[]> blocks) {
+        int[] result = new int[blocks.stream().mapToInt(block -> block.length).sum()];
+        int position = 0;
+        for (int[] block : blocks) {
+            System.arraycopy(block, 0, result, position, block.length);
+            position += block.length;
+        }
+        return result;
+    }
+
+    public int[] map(int threads, int[] values, IntUnaryOperator f) throws InterruptedException {
+        int[] result = new int[values.length];
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        result[i] = f.applyAsInt(values[i]);
+                    }
+                    return null;
+                },
+                blocks -> result);
+    }
+
+    public int reduce(int threads, int[] values, int identity,
+                      IntBinaryOperator operator) throws InterruptedException {
+        return mapReduce(threads, values, IntUnaryOperator.identity(), identity, operator);
+    }
+
+    public int mapReduce(int threads, int[] values, IntUnaryOperator lift,
+                         int identity, IntBinaryOperator operator) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    int result = identity;
+                    for (int i = from; i < to; i++) {
+                        result = operator.applyAsInt(result, lift.applyAsInt(values[i]));
+                    }
+                    return result;
+                },
+                blocks -> {
+                    int result = identity;
+                    for (int block : blocks) {
+                        result = operator.applyAsInt(result, block);
+                    }
+                    return result;
+                });
+    }
+}
@@ -4,73 +4,58 @@ import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
-public class IterativeParallelism implements AdvancedIP {
-
-    private final ParallelMapper parallelMapper;
+/**
+ * Iterative parallelism over lists, which runs blocks of work either on {@link ParallelMapper}
+ * or on threads of the selected {@link Backend}.
+ */
+public class IterativeParallelism extends AbstractParallelism implements AdvancedIP {
+    private static final int CHECK_INTERVAL = 64;
+    /**
+     * Minimal number of concatenated elements, which are copied in parallel on reused threads.
+     */
+    private static final int PARALLEL_COPY_SIZE = 1 << 16;
 
     public IterativeParallelism() {
-        this.parallelMapper = null;
+        this(Backend.THREADS);
+    }
+
+    public IterativeParallelism(final Backend backend) {
+        this(backend, Partitioning.STATIC);
+    }
+
+    public IterativeParallelism(final Backend backend, final Partitioning partitioning) {
+        super(backend, partitioning);
     }
 
     public IterativeParallelism(final ParallelMapper parallelMapper) {
-        this.parallelMapper = parallelMapper;
+        this(parallelMapper, Partitioning.STATIC);
+    }
+
+    public IterativeParallelism(final ParallelMapper parallelMapper, final Partitioning partitioning) {
+        super(parallelMapper, partitioning);
     }
 
 
     private <T, P, U> U parallelRunning(int threadsCount,
-                                        List<? extends T> values,
+                                        List<T> values,
                                         Function<List<T>, P> function,
                                         Function<List<P>, U> collector) throws InterruptedException {
-
-        List<List<? extends T>> splitValues = IntStream.range(0, Math.min(threadsCount, values.size())).mapToObj(index -> {
-            if (threadsCount < values.size()) {
-                int blockSize = values.size() / threadsCount;
-                int tailSize = values.size() % threadsCount;
-                int from = blockSize * index + Math.min(index, tailSize);
-                return values.subList(from, from + blockSize + ((index < tailSize) ? 1 : 0));
-            } else {
-                return values.subList(index, index + 1);
-            }
-        }).toList();
-
-        List<P> results;
-        if (parallelMapper == null) {
-            results = new ArrayList<>(Collections.nCopies(splitValues.size(), null));
-            List<Thread> threadList = IntStream.range(0, splitValues.size()).mapToObj(index -> new Thread(
-                    () -> results.set(index, function.apply(splitValues.get(index).stream().map(it -> (T) it).toList()))
-            )).toList();
-            threadList.forEach(Thread::start);
-            boolean isInterrupted = false;
-            InterruptedException exception = new InterruptedException("");
-            for (int i = 0; i < threadList.size(); i++) {
-                try {
-                    threadList.get(i).join();
-                } catch (InterruptedException e) {
-                    exception.addSuppressed(e);
-                    if (!isInterrupted) {
-                        for (int j = i; j < threadList.size(); j++) {
-                            threadList.get(j).interrupt();
-                        }
-                        isInterrupted = true;
-                    }
-                    // :NOTE: join
-                }
-            }
-            if (isInterrupted) {
-                throw exception;
-            }
-        } else {
-            results = parallelMapper.map(value -> function.apply(value.stream().map(it -> (T) it).toList()), splitValues);
-        }
-        return collector.apply(results);
+        return parallelRunning(threadsCount, values.size(),
+                (from, to) -> function.apply(values.subList(from, to)), collector);
     }
 
 
+    /**
+     * Returns lazy pipeline over {@code values}, which runs on this instance.
+     */
+    public <T> Pipeline<T, T> pipeline(List<? extends T> values) {
+        return new Pipeline<>(this, values, downstream -> downstream::accept);
+    }
+
     @Override
     public <T> T maximum(int threads, List<? extends T> values,
                          Comparator<? super T> comparator) throws InterruptedException {
@@ -90,40 +75,123 @@ public class IterativeParallelism implements AdvancedIP {
     @Override
     public <T> boolean all(int threads, List<? extends T> values,
                            Predicate<? super T> predicate) throws InterruptedException {
-        return parallelRunning(threads, values,
-                stream -> stream.stream().allMatch(predicate),
-                booleanStream -> booleanStream.stream().allMatch(it -> it));
+        return find(threads, values, predicate.negate(), false) < 0;
     }
 
     @Override
     public <T> boolean any(int threads, List<? extends T> values,
                            Predicate<? super T> predicate) throws InterruptedException {
-        return !all(threads, values, predicate.negate());
+        return find(threads, values, predicate, false) >= 0;
+    }
+
+    /**
+     * Returns some element matching {@code predicate}. All threads stop soon after any of them finds a match.
+     *
+     * @throws NullPointerException if the element found is {@code null}, as {@link java.util.stream.Stream#findAny} does
+     */
+    public <T> Optional<T> findAny(int threads, List<? extends T> values,
+                                   Predicate<? super T> predicate) throws InterruptedException {
+        int index = find(threads, values, predicate, false);
+        return index < 0 ? Optional.empty() : Optional.of(values.get(index));
+    }
+
+    /**
+     * Returns the first element matching {@code predicate}. Threads stop soon after a match is found
+     * before their current position.
+     *
+     * @throws NullPointerException if the element found is {@code null}, as {@link java.util.stream.Stream#findFirst} does
+     */
+    public <T> Optional<T> findFirst(int threads, List<? extends T> values,
+                                     Predicate<? super T> predicate) throws InterruptedException {
+        int index = find(threads, values, predicate, true);
+        return index < 0 ? Optional.empty() : Optional.of(values.get(index));
+    }
+
+    /**
+     * Returns index of an element matching {@code predicate}, the smallest one if {@code first}, or {@code -1}.
+     * Found indices are shared between threads, which check them every {@link #CHECK_INTERVAL} elements.
+     */
+    private <T> int find(int threads, List<? extends T> values,
+                         Predicate<? super T> predicate, boolean first) throws InterruptedException {
+        AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+        return parallelRunning(threads, values.size(),
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        if ((i - from) % CHECK_INTERVAL == 0 && found.get() < (first ? i : Integer.MAX_VALUE)) {
+                            return null;
+                        }
+                        if (predicate.test(values.get(i))) {
+                            found.accumulateAndGet(i, Math::min);
+                            return null;
+                        }
+                    }
+                    return null;
+                },
+                blocks -> found.get() == Integer.MAX_VALUE ? -1 : found.get());
     }
 
     @Override
     public <T> int count(int threads, List<? extends T> values,
                          Predicate<? super T> predicate) throws InterruptedException {
         return parallelRunning(threads, values,
-                stream -> stream.stream().filter(predicate).count(),
-                integerStream -> integerStream.stream().mapToInt(Long::intValue).sum());
+                stream -> (int) stream.stream().filter(predicate).count(),
+                integerStream -> integerStream.stream().mapToInt(Integer::intValue).sum());
     }
 
     @Override
     public String join(int threads, List<?> values) throws InterruptedException {
         return parallelRunning(threads, values,
-                stream -> stream.stream().map(Object::toString).collect(Collectors.joining("")),
-                stream -> String.join("", stream));
+                block -> {
+                    String[] strings = new String[block.size()];
+                    int length = 0;
+                    for (int i = 0; i < strings.length; i++) {
+                        strings[i] = block.get(i).toString();
+                        length += strings[i].length();
+                    }
+                    StringBuilder builder = new StringBuilder(length);
+                    for (String string : strings) {
+                        builder.append(string);
+                    }
+                    return builder.toString();
+                },
+                blocks -> String.join("", blocks));
+    }
+
+    /**
+     * Concatenates {@code blocks} into one list backed by an array of exact size.
+     * If there are at least {@link #PARALLEL_COPY_SIZE} elements and threads are {@link #reusesThreads() reused},
+     * every thread copies its blocks into their slices.
+     */
+    <T> List<T> concat(int threads, List<? extends List<? extends T>> blocks) throws InterruptedException {
+        int[] offsets = new int[blocks.size() + 1];
+        for (int i = 0; i < blocks.size(); i++) {
+            offsets[i + 1] = offsets[i] + blocks.get(i).size();
+        }
+        Object[] result = new Object[offsets[blocks.size()]];
+        Block<Void> copy = (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int position = offsets[i];
+                for (T value : blocks.get(i)) {
+                    result[position++] = value;
+                }
+            }
+            return null;
+        };
+        if (result.length < PARALLEL_COPY_SIZE || !reusesThreads()) {
+            copy.apply(0, blocks.size());
+        } else {
+            parallelRunning(threads, blocks.size(), copy, copied -> null, Partitioning.STATIC);
+        }
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(result);
+        return Collections.unmodifiableList(list);
     }
 
     private <T, U> List<U> listConverter(int threads,
                                          List<? extends T> values,
                                          Function<List<? extends T>,
                                                  List<? extends U>> converter) throws InterruptedException {
-        return parallelRunning(threads, values,
-                converter::apply,
-                streamStream -> streamStream.stream()
-                        .flatMap(stream -> stream.stream().map(it -> (U) it)).toList());
+        return concat(threads, parallelRunning(threads, values, converter::apply, Function.identity()));
     }
 
     @Override
@@ -0,0 +1,124 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Counterpart of {@link IterativeParallelism} for {@code long[]}, which doesn't box elements.
+ * Only one partial result per block is boxed.
+ */
+public class LongParallelism extends AbstractParallelism {
+
+    public LongParallelism() {
+        this(Backend.THREADS);
+    }
+
+    public LongParallelism(final Backend backend) {
+        this(backend, Partitioning.STATIC);
+    }
+
+    public LongParallelism(final Backend backend, final Partitioning partitioning) {
+        super(backend, partitioning);
+    }
+
+    public LongParallelism(final ParallelMapper parallelMapper) {
+        this(parallelMapper, Partitioning.STATIC);
+    }
+
+    public LongParallelism(final ParallelMapper parallelMapper, final Partitioning partitioning) {
+        super(parallelMapper, partitioning);
+    }
+
+    public OptionalLong maximum(int threads, long[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalLong.empty()
+                : OptionalLong.of(reduce(threads, values, Long.MIN_VALUE, Math::max));
+    }
+
+    public OptionalLong minimum(int threads, long[] values) throws InterruptedException {
+        return values.length == 0
+                ? OptionalLong.empty()
+                : OptionalLong.of(reduce(threads, values, Long.MAX_VALUE, Math::min));
+    }
+
+    public int count(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    int count = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            count++;
+                        }
+                    }
+                    return count;
+                },
+                counts -> counts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    public long[] filter(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    long[] block = new long[to - from];
+                    int size = 0;
+                    for (int i = from; i < to; i++) {
+                        if (predicate.test(values[i])) {
+                            block[size++] = values[i];
+                        }
+                    }
+                    return Arrays.copyOf(block, size);
+                },
+                LongParallelism::concat);
+    }
+
+    private static long[] concat(List<long[]> blocks) {
+        long[] result = new long[blocks.stream().mapToInt(block -> block.length).sum()];
+        int position = 0;
+        for (long[] block : blocks) {
+            System.arraycopy(block, 0, result, position, block.length);
+            position += block.length;
+        }
+        return result;
+    }
+
+    public long[] map(int threads, long[] values, LongUnaryOperator f) throws InterruptedException {
+        long[] result = new long[values.length];
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        result[i] = f.applyAsLong(values[i]);
+                    }
+                    return null;
+                },
+                blocks -> result);
+    }
+
+    public long reduce(int threads, long[] values, long identity,
+                       LongBinaryOperator operator) throws InterruptedException {
+        return mapReduce(threads, values, LongUnaryOperator.identity(), identity, operator);
+    }
+
+    public long mapReduce(int threads, long[] values, LongUnaryOperator lift,
+                          long identity, LongBinaryOperator operator) throws InterruptedException {
+        return parallelRunning(threads, values.length,
+                (from, to) -> {
+                    long result = identity;
+                    for (int i = from; i < to; i++) {
+                        result = operator.applyAsLong(result, lift.applyAsLong(values[i]));
+                    }
+                    return result;
+                },
+                blocks -> {
+                    long result = identity;
+                    for (long block : blocks) {
+                        result = operator.applyAsLong(result, block);
+                    }
+                    return result;
+                });
+    }
+}
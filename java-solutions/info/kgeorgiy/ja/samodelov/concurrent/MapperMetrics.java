@@ -0,0 +1,189 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.ja.samodelov.metrics.Jmx;
+import info.kgeorgiy.ja.samodelov.metrics.LogHistogram;
+
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters of {@link ParallelMapperImpl}: queue length, submitted, completed and rejected tasks,
+ * histograms of wait and run times and busy time of every worker.
+ */
+public class MapperMetrics implements MapperMetricsMBean {
+    public static final String OBJECT_NAME = "info.kgeorgiy.ja.samodelov.concurrent:type=ParallelMapper,id=";
+
+    /**
+     * Immutable copy of metrics at some moment.
+     */
+    public static class Snapshot implements MapperMetricsMBean {
+        private final int queueLength;
+        private final long submitted;
+        private final long completed;
+        private final long rejected;
+        private final double tasksPerSecond;
+        private final long[] waitHistogram;
+        private final long[] runHistogram;
+        private final double[] busyRatios;
+
+        private Snapshot(MapperMetrics metrics) {
+            this.queueLength = metrics.getQueueLength();
+            this.submitted = metrics.getSubmittedTasks();
+            this.completed = metrics.getCompletedTasks();
+            this.rejected = metrics.getRejectedTasks();
+            this.tasksPerSecond = metrics.getTasksPerSecond();
+            this.waitHistogram = metrics.getWaitHistogram();
+            this.runHistogram = metrics.getRunHistogram();
+            this.busyRatios = metrics.getBusyRatios();
+        }
+
+        @Override
+        public int getQueueLength() {
+            return queueLength;
+        }
+
+        @Override
+        public long getSubmittedTasks() {
+            return submitted;
+        }
+
+        @Override
+        public long getCompletedTasks() {
+            return completed;
+        }
+
+        @Override
+        public long getRejectedTasks() {
+            return rejected;
+        }
+
+        @Override
+        public double getTasksPerSecond() {
+            return tasksPerSecond;
+        }
+
+        @Override
+        public long[] getWaitHistogram() {
+            return waitHistogram.clone();
+        }
+
+        @Override
+        public long[] getRunHistogram() {
+            return runHistogram.clone();
+        }
+
+        @Override
+        public double[] getBusyRatios() {
+            return busyRatios.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Mapper: queue %d, %d submitted, %d completed (%.1f/s), %d rejected, " +
+                            "wait p50 <= %d us, p99 <= %d us, run p50 <= %d us, p99 <= %d us, busy %s",
+                    queueLength, submitted, completed, tasksPerSecond, rejected,
+                    LogHistogram.quantile(waitHistogram, 0.5) / 1000, LogHistogram.quantile(waitHistogram, 0.99) / 1000,
+                    LogHistogram.quantile(runHistogram, 0.5) / 1000, LogHistogram.quantile(runHistogram, 0.99) / 1000,
+                    Arrays.toString(Arrays.stream(busyRatios).map(ratio -> Math.round(ratio * 100) / 100.0).toArray()));
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LogHistogram waitHistogram = new LogHistogram();
+    private final LogHistogram runHistogram = new LogHistogram();
+    private final AtomicLongArray busyNanos;
+    private ObjectName name;
+
+    public MapperMetrics(int workers) {
+        this.busyNanos = new AtomicLongArray(workers);
+    }
+
+    void submitted() {
+        submitted.increment();
+        queueLength.incrementAndGet();
+    }
+
+    void started(long waitNanos) {
+        queueLength.decrementAndGet();
+        waitHistogram.record(waitNanos);
+    }
+
+    void finished(int worker, long runNanos) {
+        completed.increment();
+        runHistogram.record(runNanos);
+        busyNanos.addAndGet(worker, runNanos);
+    }
+
+    void rejected() {
+        queueLength.decrementAndGet();
+        rejected.increment();
+    }
+
+    private long elapsed() {
+        return Math.max(System.nanoTime() - start, 1);
+    }
+
+    @Override
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    @Override
+    public long getSubmittedTasks() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejectedTasks() {
+        return rejected.sum();
+    }
+
+    @Override
+    public double getTasksPerSecond() {
+        return getCompletedTasks() / (elapsed() / 1e9);
+    }
+
+    @Override
+    public long[] getWaitHistogram() {
+        return waitHistogram.toArray();
+    }
+
+    @Override
+    public long[] getRunHistogram() {
+        return runHistogram.toArray();
+    }
+
+    @Override
+    public double[] getBusyRatios() {
+        long elapsed = elapsed();
+        double[] result = new double[busyNanos.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Math.min(1, (double) busyNanos.get(i) / elapsed);
+        }
+        return result;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    public void register(int id) {
+        name = Jmx.register(this, OBJECT_NAME + id);
+    }
+
+    public void unregister() {
+        Jmx.unregister(name);
+    }
+}
@@ -0,0 +1,33 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.ja.samodelov.metrics.LogHistogram;
+
+/**
+ * JMX view of {@link MapperMetrics}.
+ */
+public interface MapperMetricsMBean {
+    int getQueueLength();
+
+    long getSubmittedTasks();
+
+    long getCompletedTasks();
+
+    long getRejectedTasks();
+
+    double getTasksPerSecond();
+
+    /**
+     * Returns number of tasks by time spent in queue in buckets of {@link LogHistogram}.
+     */
+    long[] getWaitHistogram();
+
+    /**
+     * Returns number of tasks by running time, with the same buckets as {@link #getWaitHistogram()}.
+     */
+    long[] getRunHistogram();
+
+    /**
+     * Returns share of time every worker spent running tasks.
+     */
+    double[] getBusyRatios();
+}
@@ -3,84 +3,407 @@ package info.kgeorgiy.ja.samodelov.concurrent;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 
+/**
+ * Work-stealing {@link ParallelMapper}.
+ * <p>
+ * Every worker owns a lock-free deque: the owner takes tasks from its head and idle workers steal from
+ * tails of other deques. Every call of {@link #map} puts one task per worker into the deques,
+ * and the tasks claim chunks of the call from a shared cursor.
+ * Workers without tasks park until new tasks are submitted.
+ * <p>
+ * Every task sizes its chunks as it goes: the first chunk is one element, and next ones are sized
+ * by measured cost of elements to amortize claiming overhead without leaving other workers without work.
+ * The caller only waits, so {@code f} is applied on worker threads only.
+ * <p>
+ * Besides blocking {@link #map}, results can be received as a future or one by one as they are ready.
+ * <p>
+ * Optional {@link MapperMetrics} measure queue length, wait and run times of chunks and busy time of workers.
+ */
 public class ParallelMapperImpl implements ParallelMapper {
+    private static final long TARGET_CHUNK_NANOS = 50_000;
 
-    private final List<Thread> threadList;
-    private final Deque<Runnable> taskDeque = new ArrayDeque<>();
-    private final Runnable MAPPER_THREAD = () -> {
-        try {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final List<Worker> workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final MapperMetrics metrics;
+    private volatile boolean closed;
+    private volatile boolean rejecting;
+
+    /**
+     * Task of one call, which claims and maps its chunks.
+     */
+    private static class CallTask implements Runnable {
+        private final MapCall<?, ?> call;
+        private final int tasks;
+        private long enqueued;
+
+        private CallTask(MapCall<?, ?> call, int tasks) {
+            this.call = call;
+            this.tasks = tasks;
+        }
+
+        @Override
+        public void run() {
+            call.run(tasks);
+        }
+
+        private void reject() {
+            call.future.completeExceptionally(new RejectedExecutionException("Parallel mapper is closed"));
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final Deque<CallTask> tasks = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean idle = new AtomicBoolean();
+        private final Thread thread = new Thread(this);
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private CallTask next() {
+            CallTask task = tasks.pollFirst();
+            if (task != null) {
+                return task;
+            }
+            int start = ThreadLocalRandom.current().nextInt(workers.size());
+            for (int i = 0; i < workers.size(); i++) {
+                Worker victim = workers.get((start + i) % workers.size());
+                if (victim != this && (task = victim.tasks.pollLast()) != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
             while (!Thread.interrupted()) {
-                Runnable runnable;
-                synchronized (taskDeque) {
-                    while (taskDeque.isEmpty()) {
-                        taskDeque.wait();
+                CallTask task = next();
+                if (task == null) {
+                    if (closed) {
+                        return;
                     }
-                    runnable = taskDeque.poll();
+                    idle.set(true);
+                    idleWorkers.add(this);
+                    // recheck after publishing idleness, so concurrent submit is either seen here or unparks us
+                    task = next();
+                    if (task == null) {
+                        // recheck closed, since close may unpark before idleness is published
+                        while (idle.get() && !closed && !Thread.currentThread().isInterrupted()) {
+                            LockSupport.park(this);
+                        }
+                        continue;
+                    }
+                    idle.set(false);
+                }
+                if (metrics == null) {
+                    task.run();
+                } else {
+                    long start = System.nanoTime();
+                    metrics.started(start - task.enqueued);
+                    task.run();
+                    metrics.finished(index, System.nanoTime() - start);
                 }
-                runnable.run();
             }
-        } catch (InterruptedException e) {
-            System.err.print("");
-        } finally {
-            Thread.currentThread().interrupt();
         }
-    };
+    }
 
     public ParallelMapperImpl(int threads) {
-        threadList = new ArrayList<>(threads);
-        IntStream.range(0, threads).forEach(i -> threadList.add(new Thread(MAPPER_THREAD)));
-        threadList.forEach(Thread::start);
+        this(threads, false);
+    }
+
+    /**
+     * Creates mapper with {@code threads} workers. If {@code instrumented}, tasks are measured
+     * and {@link #getMetrics() metrics} are registered in JMX until the mapper is closed.
+     */
+    public ParallelMapperImpl(int threads, boolean instrumented) {
+        workers = IntStream.range(0, threads).mapToObj(Worker::new).toList();
+        if (instrumented) {
+            metrics = new MapperMetrics(threads);
+            metrics.register(IDS.incrementAndGet());
+        } else {
+            metrics = null;
+        }
+        workers.forEach(worker -> worker.thread.start());
+    }
+
+    /**
+     * Returns metrics of this mapper, or {@code null} if it isn't instrumented.
+     */
+    public MapperMetrics getMetrics() {
+        return metrics;
     }
 
-    private static class ConcurrentList<T> {
-        private final List<T> list;
-        private int processedObjects = 0;
+    private void submit(CallTask task) {
+        if (metrics != null) {
+            task.enqueued = System.nanoTime();
+            metrics.submitted();
+        }
+        Worker worker = workers.get(Math.floorMod(nextWorker.getAndIncrement(), workers.size()));
+        worker.tasks.addLast(task);
+        // recheck after publishing the task, so concurrent close either sees it or is seen here
+        if (closed && worker.tasks.remove(task)) {
+            reject(task);
+            return;
+        }
+        Worker idle;
+        while ((idle = idleWorkers.poll()) != null) {
+            if (idle.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(idle.thread);
+                return;
+            }
+        }
+    }
+
+    /**
+     * State of one mapping call: plain array of values, cursor of unclaimed elements and lock-free counter
+     * of unprocessed elements. Tasks stop as soon as {@link #future} is done, so failure or cancellation
+     * skips queued work. Anything thrown by {@code f} fails the call, but not the worker.
+     * If {@link #consumer} is set, it receives every value in completion order, or in index order
+     * if {@link #ready} is set.
+     */
+    private class MapCall<T, R> {
+        private final Function<? super T, ? extends R> f;
+        private final List<? extends T> args;
+        private final Object[] values;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+        private final ObjIntConsumer<? super R> consumer;
+        private final AtomicIntegerArray ready;
+        private final AtomicInteger drains = new AtomicInteger();
+        private int delivered;
+
+        private MapCall(Function<? super T, ? extends R> f, List<? extends T> args,
+                        ObjIntConsumer<? super R> consumer, boolean ordered) {
+            this.f = f;
+            this.args = args;
+            this.values = new Object[args.size()];
+            this.remaining = new AtomicInteger(args.size());
+            this.consumer = consumer;
+            this.ready = consumer != null && ordered ? new AtomicIntegerArray(args.size()) : null;
+            if (args.isEmpty()) {
+                future.complete(list());
+            }
+        }
+
+        private void apply(int index) {
+            R value = f.apply(args.get(index));
+            values[index] = value;
+            if (ready != null) {
+                ready.set(index, 1);
+                drain();
+            } else if (consumer != null) {
+                consumer.accept(value, index);
+            }
+        }
 
-        private ConcurrentList(int size) {
-            this.list = new ArrayList<>(Collections.nCopies(size, null));
+        /**
+         * Claims and maps chunks until all elements are claimed. The first chunk is one element, every next one
+         * takes about {@link #TARGET_CHUNK_NANOS} by cost of elements of the previous one, but grows at most twice
+         * and is at most an equal share of the rest between {@code tasks}.
+         */
+        private void run(int tasks) {
+            int size = 1;
+            while (!future.isDone()) {
+                int from;
+                int to;
+                do {
+                    from = cursor.get();
+                    to = Math.min(values.length, from + size);
+                    if (from >= values.length) {
+                        return;
+                    }
+                    if (rejecting) {
+                        future.completeExceptionally(new RejectedExecutionException("Parallel mapper is closed"));
+                        return;
+                    }
+                } while (!cursor.compareAndSet(from, to));
+                long start = System.nanoTime();
+                try {
+                    for (int i = from; i < to && !future.isDone(); i++) {
+                        apply(i);
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    processed(to - from);
+                }
+                long elementNanos = Math.max(1, (System.nanoTime() - start) / (to - from));
+                long share = (values.length - to + tasks - 1) / tasks;
+                size = (int) Math.max(1, Math.min(Math.min(TARGET_CHUNK_NANOS / elementNanos, 2L * size), share));
+            }
         }
 
-        public synchronized void set(int index, T value) {
-            list.set(index, value);
-            processedObjects++;
-            if (processedObjects == list.size()) {
-                notify();
+        private void processed(int count) {
+            if (remaining.addAndGet(-count) == 0 && ready == null) {
+                future.complete(list());
             }
         }
 
-        public synchronized List<T> getList() throws InterruptedException {
-            while (processedObjects < list.size()) {
-                wait();
+        /**
+         * Delivers ready prefix of values to consumer. Only one thread delivers at once,
+         * others just ask it to look again.
+         */
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
             }
-            return list;
+            int missed = 1;
+            do {
+                try {
+                    for (; delivered < values.length && ready.get(delivered) != 0 && !future.isDone(); delivered++) {
+                        consumer.accept((R) values[delivered], delivered);
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                if (delivered == values.length) {
+                    future.complete(list());
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<R> list() {
+            return (List<R>) Arrays.asList(values);
         }
     }
 
+    private void reject(CallTask task) {
+        if (metrics != null) {
+            metrics.rejected();
+        }
+        task.reject();
+    }
+
+    private <T, R> CompletableFuture<List<R>> submit(MapCall<T, R> call) {
+        if (closed) {
+            call.future.completeExceptionally(new RejectedExecutionException("Parallel mapper is closed"));
+            return call.future;
+        }
+        int tasks = Math.min(workers.size(), call.args.size());
+        for (int i = 0; i < tasks; i++) {
+            submit(new CallTask(call, tasks));
+        }
+        return call.future;
+    }
+
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
-        ConcurrentList<R> result = new ConcurrentList<>(args.size());
-        IntStream.range(0, args.size()).forEach(i -> {
-            synchronized (taskDeque) {
-                taskDeque.add(() -> result.set(i, f.apply(args.get(i))));
-                taskDeque.notifyAll();
+        if (closed) {
+            throw new RejectedExecutionException("Parallel mapper is closed");
+        }
+        MapCall<T, R> call = new MapCall<>(f, args, null, false);
+        CompletableFuture<List<R>> future = submit(call);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
             }
-        });
-        return result.getList();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Maps {@code args} without blocking the caller.
+     * Cancellation of the returned future skips all elements, which aren't mapped yet.
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args) {
+        return submit(new MapCall<>(f, args, null, false));
+    }
+
+    /**
+     * Maps {@code args} without blocking the caller and passes every result with its index to {@code consumer}
+     * as soon as it's ready. If {@code ordered}, results are passed in index order by one thread at a time,
+     * otherwise they are passed in completion order concurrently from worker threads.
+     * <p>
+     * The returned future completes with all results after they are passed, or exceptionally if
+     * {@code f} or {@code consumer} throws. Cancellation skips all elements, which aren't mapped yet.
+     */
+    public <T, R> CompletableFuture<List<R>> mapEach(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                     boolean ordered, ObjIntConsumer<? super R> consumer) {
+        return submit(new MapCall<>(f, args, consumer, ordered));
     }
 
+    /**
+     * Stops workers and rejects tasks, which aren't started yet: calls waiting for them
+     * fail with {@link RejectedExecutionException}. Running tasks finish their current chunks
+     * and fail their calls instead of claiming the rest.
+     */
     @Override
     public void close() {
-        threadList.forEach(thread -> {
-                    thread.interrupt();
+        close(false);
+    }
+
+    /**
+     * Closes the mapper. New calls are rejected at once. If {@code drain}, queued tasks are still processed
+     * before workers stop, otherwise they are rejected as in {@link #close()}.
+     *
+     * @return number of drained or rejected tasks
+     */
+    public int close(boolean drain) {
+        closed = true;
+        rejecting = !drain;
+        int queued = 0;
+        for (Worker worker : workers) {
+            queued += worker.tasks.size();
+            if (drain) {
+                worker.idle.set(false);
+                LockSupport.unpark(worker.thread);
+            } else {
+                worker.thread.interrupt();
+            }
+        }
+        workers.forEach(worker -> {
                     try {
-                        thread.join();
+                        worker.thread.join();
                     } catch (InterruptedException e) {
                         System.err.print("");
                     }
                 }
         );
+        if (!drain) {
+            queued = 0;
+            for (Worker worker : workers) {
+                CallTask task;
+                while ((task = worker.tasks.pollFirst()) != null) {
+                    reject(task);
+                    queued++;
+                }
+            }
+        }
+        if (metrics != null) {
+            metrics.unregister();
+        }
+        return queued;
     }
 }
@@ -0,0 +1,97 @@
+package info.kgeorgiy.ja.samodelov.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP.Monoid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Lazy chain of {@code filter} and {@code map} stages over a list, created by {@link IterativeParallelism#pipeline}.
+ * Stages don't compute anything: terminal operation pushes every element of a block through all stages
+ * in one pass, and only partial results of blocks are combined.
+ *
+ * @param <S> type of source elements
+ * @param <T> type of elements after all stages
+ */
+public class Pipeline<S, T> {
+    private static class Box<T> {
+        private T value;
+
+        private Box(T value) {
+            this.value = value;
+        }
+    }
+
+    private final IterativeParallelism parallelism;
+    private final List<? extends S> source;
+    private final Function<Consumer<? super T>, Consumer<S>> stages;
+
+    Pipeline(IterativeParallelism parallelism, List<? extends S> source,
+             Function<Consumer<? super T>, Consumer<S>> stages) {
+        this.parallelism = parallelism;
+        this.source = source;
+        this.stages = stages;
+    }
+
+    public Pipeline<S, T> filter(Predicate<? super T> predicate) {
+        return new Pipeline<>(parallelism, source, downstream -> stages.apply(value -> {
+            if (predicate.test(value)) {
+                downstream.accept(value);
+            }
+        }));
+    }
+
+    public <U> Pipeline<S, U> map(Function<? super T, ? extends U> f) {
+        return new Pipeline<>(parallelism, source,
+                downstream -> stages.apply(value -> downstream.accept(f.apply(value))));
+    }
+
+    /**
+     * Pushes source elements with indices {@code [from, to)} through all stages into {@code sink}.
+     */
+    private void push(int from, int to, Consumer<? super T> sink) {
+        Consumer<S> head = stages.apply(sink);
+        for (int i = from; i < to; i++) {
+            head.accept(source.get(i));
+        }
+    }
+
+    public T reduce(int threads, Monoid<T> monoid) throws InterruptedException {
+        BinaryOperator<T> operator = monoid.getOperator();
+        return parallelism.parallelRunning(threads, source.size(),
+                (from, to) -> {
+                    Box<T> result = new Box<>(monoid.getIdentity());
+                    push(from, to, value -> result.value = operator.apply(result.value, value));
+                    return result.value;
+                },
+                results -> results.stream().reduce(monoid.getIdentity(), operator));
+    }
+
+    public <R> R mapReduce(int threads, Function<? super T, R> lift, Monoid<R> monoid) throws InterruptedException {
+        return map(lift).reduce(threads, monoid);
+    }
+
+    public int count(int threads) throws InterruptedException {
+        return parallelism.parallelRunning(threads, source.size(),
+                (from, to) -> {
+                    int[] count = new int[1];
+                    push(from, to, value -> count[0]++);
+                    return count[0];
+                },
+                counts -> counts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    public List<T> toList(int threads) throws InterruptedException {
+        return parallelism.concat(threads, parallelism.parallelRunning(threads, source.size(),
+                (from, to) -> {
+                    List<T> block = new ArrayList<>();
+                    push(from, to, block::add);
+                    return block;
+                },
+                Function.identity()));
+    }
+}
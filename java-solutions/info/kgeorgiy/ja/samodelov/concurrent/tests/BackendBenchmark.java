@@ -0,0 +1,43 @@
+package info.kgeorgiy.ja.samodelov.concurrent.tests;
+
+import info.kgeorgiy.ja.samodelov.concurrent.AbstractParallelism;
+import info.kgeorgiy.ja.samodelov.concurrent.IterativeParallelism;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Measures per-call latency of {@link IterativeParallelism#maximum} on small inputs with every
+ * {@link AbstractParallelism.Backend}. {@link AbstractParallelism.Backend#THREADS} starts new platform threads
+ * for every call, as the former implementation did.
+ * <p>
+ * Usage: {@code BackendBenchmark [threads [calls]]}
+ */
+public class BackendBenchmark {
+    private static final int[] SIZES = {10, 100, 1000};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        for (int size : SIZES) {
+            List<Integer> values = IntStream.range(0, size).boxed().toList();
+            for (AbstractParallelism.Backend backend : AbstractParallelism.Backend.values()) {
+                IterativeParallelism parallelism = new IterativeParallelism(backend);
+                for (int i = 0; i < calls; i++) {
+                    parallelism.maximum(threads, values, Comparator.naturalOrder());
+                }
+                long[] latencies = new long[calls];
+                for (int i = 0; i < calls; i++) {
+                    long start = System.nanoTime();
+                    parallelism.maximum(threads, values, Comparator.naturalOrder());
+                    latencies[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(latencies);
+                System.out.printf("%4d elements, %d threads, %-9s median %7.1f us, p99 %7.1f us%n",
+                        size, threads, backend, latencies[calls / 2] / 1e3, latencies[calls * 99 / 100] / 1e3);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package info.kgeorgiy.ja.samodelov.concurrent.tests;
+
+import info.kgeorgiy.ja.samodelov.concurrent.ParallelMapperImpl;
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Compares throughput of {@link ParallelMapperImpl} with the former mapper, which put every element
+ * as a separate task into one deque guarded by a monitor, at different task costs and numbers of threads.
+ * <p>
+ * Usage: {@code MapperBenchmark [threads...]}
+ */
+public class MapperBenchmark {
+    private static final long[] TASK_NANOS = {0, 1_000, 100_000};
+    private static final long CALL_NANOS = 50_000_000;
+    private static final int MAX_ELEMENTS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Former mapper with one shared task deque and {@code notifyAll} on every element.
+     */
+    private static class SharedDequeMapper implements ParallelMapper {
+        private final List<Thread> threads = new ArrayList<>();
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        private SharedDequeMapper(int threads) {
+            for (int i = 0; i < threads; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        while (!Thread.interrupted()) {
+                            Runnable task;
+                            synchronized (tasks) {
+                                while (tasks.isEmpty()) {
+                                    tasks.wait();
+                                }
+                                task = tasks.poll();
+                            }
+                            task.run();
+                        }
+                    } catch (InterruptedException ignored) {
+                        // closed
+                    }
+                });
+                this.threads.add(thread);
+                thread.start();
+            }
+        }
+
+        @Override
+        public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args)
+                throws InterruptedException {
+            List<R> results = new ArrayList<>(Collections.nCopies(args.size(), null));
+            int[] done = new int[1];
+            for (int i = 0; i < args.size(); i++) {
+                int index = i;
+                synchronized (tasks) {
+                    tasks.add(() -> {
+                        R result = f.apply(args.get(index));
+                        synchronized (results) {
+                            results.set(index, result);
+                            if (++done[0] == results.size()) {
+                                results.notify();
+                            }
+                        }
+                    });
+                    tasks.notifyAll();
+                }
+            }
+            synchronized (results) {
+                while (done[0] < results.size()) {
+                    results.wait();
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public void close() {
+            threads.forEach(Thread::interrupt);
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static Function<Integer, Integer> task(long nanos) {
+        if (nanos == 0) {
+            return value -> value * 2;
+        }
+        return value -> {
+            long end = System.nanoTime() + nanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return value;
+        };
+    }
+
+    private static double nanosPerElement(ParallelMapper mapper, Function<Integer, Integer> f, List<Integer> args)
+            throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            mapper.map(f, args);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / args.size();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 4, 16};
+        for (int threads : threadCounts) {
+            for (long nanos : TASK_NANOS) {
+                int elements = (int) Math.min(MAX_ELEMENTS, CALL_NANOS / Math.max(nanos, 1));
+                List<Integer> values = new ArrayList<>(elements);
+                for (int i = 0; i < elements; i++) {
+                    values.add(i);
+                }
+                Function<Integer, Integer> f = task(nanos);
+                double former;
+                try (ParallelMapper mapper = new SharedDequeMapper(threads)) {
+                    former = nanosPerElement(mapper, f, values);
+                }
+                double current;
+                try (ParallelMapper mapper = new ParallelMapperImpl(threads)) {
+                    current = nanosPerElement(mapper, f, values);
+                }
+                System.out.printf("%2d threads, %6d ns tasks x %7d: shared deque %9.1f ns/element, " +
+                        "work stealing %9.1f ns/element%n", threads, nanos, elements, former, current);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package info.kgeorgiy.ja.samodelov.concurrent.tests;
+
+import info.kgeorgiy.ja.samodelov.concurrent.AbstractParallelism;
+import info.kgeorgiy.ja.samodelov.concurrent.IterativeParallelism;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Compares latency of {@link IterativeParallelism#count} with {@link AbstractParallelism.Partitioning#STATIC}
+ * and {@link AbstractParallelism.Partitioning#DYNAMIC} partitioning, when first {@link #SKEWED_SHARE} of elements
+ * are {@link #SKEW} times as expensive as the rest, so the first static block is a straggler.
+ * Expensive elements either wait, like records, which are paged in, or spin, which shows the gain only
+ * if there are as many cores as threads.
+ * <p>
+ * Usage: {@code PartitioningBenchmark [threads [elements [calls]]]}
+ */
+public class PartitioningBenchmark {
+    private static final double SKEWED_SHARE = 0.1;
+    private static final int SKEW = 20;
+    private static final long WAIT_NANOS = 50_000;
+    private static final long SPIN_NANOS = 2_000;
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static Predicate<Integer> skewed(int elements, boolean wait) {
+        int skewed = (int) (elements * SKEWED_SHARE);
+        long nanos = wait ? WAIT_NANOS : SPIN_NANOS;
+        return value -> {
+            long cost = value < skewed ? nanos * SKEW : nanos;
+            if (wait) {
+                LockSupport.parkNanos(cost);
+            } else {
+                spin(cost);
+            }
+            return value % 2 == 0;
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int elements = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        List<Integer> values = IntStream.range(0, elements).boxed().toList();
+
+        for (boolean wait : new boolean[]{true, false}) {
+            Predicate<Integer> predicate = skewed(elements, wait);
+            for (AbstractParallelism.Partitioning partitioning : AbstractParallelism.Partitioning.values()) {
+                IterativeParallelism parallelism = new IterativeParallelism(AbstractParallelism.Backend.POOLED,
+                        partitioning);
+                parallelism.count(threads, values, predicate);
+                long[] latencies = new long[calls];
+                for (int i = 0; i < calls; i++) {
+                    long start = System.nanoTime();
+                    parallelism.count(threads, values, predicate);
+                    latencies[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(latencies);
+                System.out.printf("%s %s: %d threads, %d elements, median %.1f ms, max %.1f ms%n",
+                        wait ? "wait" : "spin", partitioning, threads, elements,
+                        latencies[calls / 2] / 1e6, latencies[calls - 1] / 1e6);
+            }
+        }
+    }
+}
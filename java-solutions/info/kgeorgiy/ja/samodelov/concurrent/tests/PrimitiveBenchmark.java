@@ -0,0 +1,70 @@
+package info.kgeorgiy.ja.samodelov.concurrent.tests;
+
+import info.kgeorgiy.ja.samodelov.concurrent.AbstractParallelism;
+import info.kgeorgiy.ja.samodelov.concurrent.IntParallelism;
+import info.kgeorgiy.ja.samodelov.concurrent.IterativeParallelism;
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Compares {@link IntParallelism} on {@code int[]} with boxed {@link IterativeParallelism} on {@code List<Integer>}
+ * of the same values, both on {@link AbstractParallelism.Backend#POOLED} threads.
+ * <p>
+ * Usage: {@code PrimitiveBenchmark [threads [elements]]}
+ */
+public class PrimitiveBenchmark {
+    private static final int ROUNDS = 7;
+
+    private interface Operation {
+        Object run() throws InterruptedException;
+    }
+
+    private static void compare(String name, int elements, Operation primitive, Operation boxed)
+            throws InterruptedException {
+        System.out.printf("%-9s int[] %6.2f ns/element, List<Integer> %6.2f ns/element%n",
+                name, nanosPerElement(primitive, elements), nanosPerElement(boxed, elements));
+    }
+
+    private static double nanosPerElement(Operation operation, int elements) throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            operation.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / elements;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int elements = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int[] values = new Random(1).ints(elements).toArray();
+        List<Integer> boxed = IntStream.of(values).boxed().toList();
+        IntParallelism primitive = new IntParallelism(AbstractParallelism.Backend.POOLED);
+        IterativeParallelism iterative = new IterativeParallelism(AbstractParallelism.Backend.POOLED);
+        AdvancedIP.Monoid<Integer> sum = new AdvancedIP.Monoid<>(0, Integer::sum);
+
+        compare("maximum", elements,
+                () -> primitive.maximum(threads, values),
+                () -> iterative.maximum(threads, boxed, Comparator.naturalOrder()));
+        compare("count", elements,
+                () -> primitive.count(threads, values, value -> value % 2 == 0),
+                () -> iterative.count(threads, boxed, value -> value % 2 == 0));
+        compare("filter", elements,
+                () -> primitive.filter(threads, values, value -> value % 2 == 0),
+                () -> iterative.filter(threads, boxed, value -> value % 2 == 0));
+        compare("map", elements,
+                () -> primitive.map(threads, values, value -> value * 3),
+                () -> iterative.map(threads, boxed, value -> value * 3));
+        compare("reduce", elements,
+                () -> primitive.reduce(threads, values, 0, Integer::sum),
+                () -> iterative.reduce(threads, boxed, sum));
+        compare("mapReduce", elements,
+                () -> primitive.mapReduce(threads, values, value -> value * 3, 0, Integer::sum),
+                () -> iterative.mapReduce(threads, boxed, value -> value * 3, sum));
+    }
+}
@@ -0,0 +1,58 @@
+package info.kgeorgiy.ja.samodelov.concurrent.tests;
+
+import info.kgeorgiy.ja.samodelov.concurrent.AbstractParallelism;
+import info.kgeorgiy.ja.samodelov.concurrent.IterativeParallelism;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Compares latency of short-circuiting {@link IterativeParallelism#any}, {@link IterativeParallelism#findAny}
+ * and {@link IterativeParallelism#findFirst} with a full scan by {@link IterativeParallelism#count},
+ * which is what {@code any} did before, when the only match is early, in the middle or absent.
+ * Every predicate call spins for {@link #PREDICATE_NANOS}.
+ * <p>
+ * Usage: {@code ShortCircuitBenchmark [threads [elements]]}
+ */
+public class ShortCircuitBenchmark {
+    private static final long PREDICATE_NANOS = 200;
+    private static final int ROUNDS = 5;
+
+    private interface Operation {
+        Object run() throws InterruptedException;
+    }
+
+    private static double millis(Operation operation) throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            operation.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int elements = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        List<Integer> values = IntStream.range(0, elements).boxed().toList();
+        IterativeParallelism parallelism = new IterativeParallelism(AbstractParallelism.Backend.POOLED);
+
+        for (int match : new int[]{elements / 100, elements / 2, -1}) {
+            Predicate<Integer> predicate = value -> {
+                long end = System.nanoTime() + PREDICATE_NANOS;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                return value == match;
+            };
+            System.out.printf("%s: full scan %.1f ms, any %.1f ms, findAny %.1f ms, findFirst %.1f ms%n",
+                    match < 0 ? "no match" : "match at " + match,
+                    millis(() -> parallelism.count(threads, values, predicate) > 0),
+                    millis(() -> parallelism.any(threads, values, predicate)),
+                    millis(() -> parallelism.findAny(threads, values, predicate)),
+                    millis(() -> parallelism.findFirst(threads, values, predicate)));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate {@link VisitedSet}, which keeps URLs in a scalable Bloom filter.
+ * <p>
+ * The filter is a chain of plain Bloom filters. When the last one holds its capacity, a filter with doubled
+ * capacity and halved false positive rate is added, so the total false positive rate stays below the given one.
+ * <p>
+ * Crawls with this set are approximate: new URLs, which are falsely reported as known, aren't crawled,
+ * and depths aren't kept, so every known URL is reported with {@link Integer#MAX_VALUE} depth
+ * and pages reached again with greater depth aren't crawled deeper. The result may miss pages,
+ * but every reached URL is reported as new only once, even if it's added by several threads at once,
+ * so no page is downloaded twice.
+ */
+public class BloomVisitedSet implements VisitedSet {
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final double LN2 = Math.log(2);
+    private static final int STRIPES = 64;
+
+    private static class Filter {
+        private final long[] bits;
+        private final long size;
+        private final int hashes;
+        private final long capacity;
+        private final AtomicLong count = new AtomicLong();
+
+        private Filter(long capacity, double fpp) {
+            long words = (long) Math.ceil(-capacity * Math.log(fpp) / (LN2 * LN2) / Long.SIZE);
+            if (words > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Bloom filter is too large");
+            }
+            this.bits = new long[(int) Math.max(words, 1)];
+            this.size = (long) bits.length * Long.SIZE;
+            this.hashes = (int) Math.max(1, Math.round((double) size / capacity * LN2));
+            this.capacity = capacity;
+        }
+
+        private boolean contains(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, size);
+                if (((long) BITS.getAcquire(bits, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sets bits of the URL and returns {@code true} if some of them weren't set.
+         */
+        private boolean add(long h1, long h2) {
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, size);
+                long mask = 1L << bit;
+                if (((long) BITS.getAndBitwiseOr(bits, (int) (bit >>> 6), mask) & mask) == 0) {
+                    added = true;
+                }
+            }
+            if (added) {
+                count.incrementAndGet();
+            }
+            return added;
+        }
+    }
+
+    private final double fpp;
+    /**
+     * Locks of URLs by their first hash, so a URL is checked and added by one thread at a time.
+     */
+    private final Object[] stripes = new Object[STRIPES];
+    private volatile Filter[] filters;
+
+    /**
+     * Creates filter, which is not grown until it holds {@code expected} URLs,
+     * with false positive rate at most {@code fpp}.
+     */
+    public BloomVisitedSet(long expected, double fpp) {
+        if (expected <= 0 || !(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("Expected size must be positive and false positive rate in (0, 1)");
+        }
+        this.fpp = fpp;
+        this.filters = new Filter[]{new Filter(expected, fpp / 2)};
+        Arrays.setAll(stripes, i -> new Object());
+    }
+
+    @Override
+    public int raise(String url, int depth) {
+        long[] fingerprint = FingerprintVisitedSet.fingerprint(url);
+        long h1 = fingerprint[0];
+        long h2 = fingerprint[1] | 1;
+        Filter last;
+        synchronized (stripes[(int) (h1 >>> 58) & (STRIPES - 1)]) {
+            Filter[] current = filters;
+            for (int i = 0; i < current.length - 1; i++) {
+                if (current[i].contains(h1, h2)) {
+                    return Integer.MAX_VALUE;
+                }
+            }
+            last = current[current.length - 1];
+            if (!last.add(h1, h2)) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        if (last.count.get() >= last.capacity) {
+            grow(last);
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean keepsDepths() {
+        return false;
+    }
+
+    private synchronized void grow(Filter last) {
+        Filter[] current = filters;
+        if (current[current.length - 1] == last) {
+            Filter[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = new Filter(last.capacity * 2, fpp / (1L << Math.min(current.length + 1, 62)));
+            filters = grown;
+        }
+    }
+
+    @Override
+    public long size() {
+        return Arrays.stream(filters).mapToLong(filter -> filter.count.get()).sum();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return Arrays.stream(filters).mapToLong(filter -> (long) filter.bits.length * Long.BYTES).sum();
+    }
+}
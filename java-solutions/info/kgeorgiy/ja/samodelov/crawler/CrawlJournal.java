@@ -0,0 +1,488 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only on-disk journal of one crawl, which lets it be resumed after the process dies.
+ * <p>
+ * Records of discovered, completed and failed pages are buffered and written to the current segment
+ * by batches of {@link #BATCH_BYTES}, or every {@link #FLUSH_INTERVAL_MILLIS}, with one {@code fsync} per batch.
+ * Page is journaled as completed only after all its links are journaled as discovered, so the last
+ * records lost by a crash only make some pages be downloaded again.
+ * When a segment gets {@link #SEGMENT_RECORDS} records, a new one is started, and a background thread
+ * folds the snapshot and older segments into a new snapshot with one record per page.
+ * <p>
+ * If a batch can't be written, the journal fails: all later records are rejected with {@link UncheckedIOException},
+ * and nothing is written after the batch, which may be torn, so the journal still can be resumed.
+ * <p>
+ * The journal starts with a header file with start URL, depth and allowed hosts of the crawl,
+ * and can't be opened for another crawl.
+ */
+public class CrawlJournal implements AutoCloseable {
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    private static final int SEGMENT_RECORDS = 1 << 20;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+    private static final int STRIPES = 64;
+    /**
+     * Longer error messages are truncated, so they fit in {@link #MAX_STRING_BYTES} in UTF-8.
+     */
+    private static final int MAX_ERROR_CHARS = MAX_STRING_BYTES / 3;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String HEADER = "header";
+    private static final int HEADER_MAGIC = 0x43524157;
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)");
+    private static final byte DISCOVERED = 'D';
+    private static final byte COMPLETED = 'C';
+    private static final byte FAILED = 'F';
+
+    /**
+     * Journaled state of one page: the greatest depth it was discovered with, the greatest depth
+     * it was completed with or {@code 0}, and message of download error or {@code null}.
+     */
+    static class PageState {
+        private int discovered;
+        private int completed;
+        private String error;
+
+        int getDiscovered() {
+            return discovered;
+        }
+
+        int getCompleted() {
+            return completed;
+        }
+
+        String getError() {
+            return error;
+        }
+    }
+
+    private final Path directory;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    /**
+     * Locks of records buffer and of the current segment. They aren't monitors, since virtual threads
+     * would pin their carriers waiting in a monitor. Records buffer is locked only to append or take a batch,
+     * and segment is locked while the batch is written and forced to disk.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock segmentLock = new ReentrantLock();
+    /**
+     * Locks of URL stripes, which order discovery of the same URL by different pages.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor();
+    private Map<String, PageState> recovered;
+    private FileChannel channel;
+    private int segment;
+    private int segmentRecords;
+    private int bufferedRecords;
+    private volatile IOException failure;
+
+    /**
+     * Opens journal of crawl from {@code url} with {@code depth} limited by {@code hosts} or not limited,
+     * if they are {@code null}, in {@code directory}, recovering state of the crawl journaled there before, if any.
+     *
+     * @throws IOException if the directory holds journal of another crawl.
+     */
+    public CrawlJournal(Path directory, String url, int depth, Set<String> hosts) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        checkHeader(url, depth, hosts == null ? null : new TreeSet<>(hosts));
+        this.recovered = new HashMap<>();
+        int covered = read(directory.resolve(SNAPSHOT), recovered);
+        int last = covered;
+        for (int index : segments(covered)) {
+            read(segment(index), recovered);
+            last = Math.max(last, index);
+        }
+        this.segment = last + 1;
+        this.channel = open(segment);
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes header of a new journal or checks that the existing journal has the same one.
+     */
+    private void checkHeader(String url, int depth, SortedSet<String> hosts) throws IOException {
+        Path header = directory.resolve(HEADER);
+        if (Files.exists(header)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(header)))) {
+                if (in.readInt() != HEADER_MAGIC) {
+                    throw new IOException("Unexpected format of crawl journal header " + header);
+                }
+                String journaledUrl = readString(in);
+                int journaledDepth = in.readInt();
+                int count = in.readInt();
+                SortedSet<String> journaledHosts = count < 0 ? null : new TreeSet<>();
+                for (int i = 0; i < count; i++) {
+                    journaledHosts.add(readString(in));
+                }
+                if (!journaledUrl.equals(url) || journaledDepth != depth || !Objects.equals(journaledHosts, hosts)) {
+                    throw new IOException(String.format("Journal in %s belongs to crawl of %s with depth %d and hosts %s",
+                            directory, journaledUrl, journaledDepth, journaledHosts));
+                }
+            } catch (EOFException e) {
+                throw new IOException("Crawl journal header " + header + " is truncated");
+            }
+            return;
+        }
+        if (Files.exists(directory.resolve(SNAPSHOT)) || segments(-1).length > 0) {
+            throw new IOException("Journal in " + directory + " has no header");
+        }
+        Path temporary = directory.resolve(HEADER + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(HEADER_MAGIC);
+            writeString(out, url);
+            out.writeInt(depth);
+            out.writeInt(hosts == null ? -1 : hosts.size());
+            if (hosts != null) {
+                for (String host : hosts) {
+                    writeString(out, host);
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, header, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * Returns state of pages recovered from disk and forgets it.
+     */
+    Map<String, PageState> recover() {
+        writeLock.lock();
+        try {
+            Map<String, PageState> result = recovered;
+            recovered = Map.of();
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Raises {@code url} in {@code visited} and journals it as discovered, if its depth is raised.
+     * Both are done under lock of the URL stripe, so a page, which sees the link as known,
+     * can't be journaled as completed before the link is journaled as discovered.
+     *
+     * @return depth returned by {@link VisitedSet#raise}
+     * @throws IllegalArgumentException if {@code url} is longer than {@link #MAX_STRING_BYTES} in UTF-8.
+     * Such URL isn't raised.
+     */
+    public int discovered(VisitedSet visited, String url, int depth) {
+        if (url.length() > MAX_STRING_BYTES / 3 && url.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("URL is longer than " + MAX_STRING_BYTES + " bytes and can't be journaled");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Crawl journal failed", failure);
+        }
+        int previous;
+        boolean full;
+        ReentrantLock stripe = stripes[url.hashCode() & (STRIPES - 1)];
+        stripe.lock();
+        try {
+            previous = visited.raise(url, depth);
+            full = depth > previous && buffer(DISCOVERED, url, depth, null);
+        } finally {
+            stripe.unlock();
+        }
+        if (full) {
+            flush();
+        }
+        return previous;
+    }
+
+    public void completed(String url, int depth) {
+        append(COMPLETED, url, depth, null);
+    }
+
+    public void failed(String url, int depth, IOException e) {
+        String error = String.valueOf(e.getMessage());
+        append(FAILED, url, depth, error.length() > MAX_ERROR_CHARS ? error.substring(0, MAX_ERROR_CHARS) : error);
+    }
+
+    private void append(byte type, String url, int depth, String error) {
+        if (buffer(type, url, depth, error)) {
+            flush();
+        }
+    }
+
+    /**
+     * Buffers record and returns {@code true} if the batch is full.
+     */
+    private boolean buffer(byte type, String url, int depth, String error) {
+        writeLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Crawl journal failed", failure);
+            }
+            write(out, type, url, depth, error);
+            bufferedRecords++;
+            return buffer.size() >= BATCH_BYTES;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered records and forces them to disk.
+     *
+     * @throws IOException error, which failed the journal, if any.
+     */
+    public void sync() throws IOException {
+        flush();
+        if (failure != null) {
+            throw new IOException("Crawl journal failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Writes buffered records and forces them to disk.
+     */
+    private void flush() {
+        segmentLock.lock();
+        try {
+            byte[] batch;
+            writeLock.lock();
+            try {
+                if (buffer.size() == 0 || failure != null) {
+                    return;
+                }
+                batch = buffer.toByteArray();
+                buffer.reset();
+                segmentRecords += bufferedRecords;
+                bufferedRecords = 0;
+            } finally {
+                writeLock.unlock();
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(batch);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            if (segmentRecords >= SEGMENT_RECORDS) {
+                channel.close();
+                int covered = segment++;
+                segmentRecords = 0;
+                channel = open(segment);
+                compactor.submit(() -> compact(covered));
+            }
+        } catch (IOException e) {
+            writeLock.lock();
+            try {
+                failure = e;
+                buffer.reset();
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            segmentLock.unlock();
+        }
+    }
+
+    /**
+     * Folds snapshot and segments up to {@code covered} into new snapshot and deletes them.
+     */
+    private void compact(int covered) {
+        try {
+            Map<String, PageState> states = new HashMap<>();
+            read(directory.resolve(SNAPSHOT), states);
+            for (int index : segments(-1)) {
+                if (index <= covered) {
+                    read(segment(index), states);
+                }
+            }
+            Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+            try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporary)))) {
+                snapshot.writeInt(covered);
+                for (Map.Entry<String, PageState> entry : states.entrySet()) {
+                    PageState state = entry.getValue();
+                    if (state.error != null) {
+                        write(snapshot, FAILED, entry.getKey(), state.completed, state.error);
+                    } else if (state.completed > 0) {
+                        write(snapshot, COMPLETED, entry.getKey(), state.completed, null);
+                    }
+                    if (state.discovered > state.completed) {
+                        write(snapshot, DISCOVERED, entry.getKey(), state.discovered, null);
+                    }
+                }
+            }
+            try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                snapshot.force(true);
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            for (int index : segments(-1)) {
+                if (index <= covered) {
+                    Files.deleteIfExists(segment(index));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write crawl snapshot: " + e.getMessage());
+            try {
+                Files.deleteIfExists(directory.resolve(SNAPSHOT + ".tmp"));
+            } catch (IOException ignored) {
+                // will be replaced by the next snapshot
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, byte type, String url, int depth, String error)
+            throws IOException {
+        out.writeByte(type);
+        writeString(out, url);
+        out.writeInt(depth);
+        if (type == FAILED) {
+            writeString(out, error);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("String of " + bytes.length + " bytes can't be journaled");
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Folds records of {@code file} into {@code states}. A record torn by a crash ends the file.
+     *
+     * @return segment covered by the snapshot or {@code -1}.
+     */
+    private static int read(Path file, Map<String, PageState> states) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int covered = file.getFileName().toString().equals(SNAPSHOT) ? in.readInt() : -1;
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    String url = readString(in);
+                    int depth = in.readInt();
+                    String error = type == FAILED ? readString(in) : null;
+                    PageState state = states.computeIfAbsent(url, key -> new PageState());
+                    state.discovered = Math.max(state.discovered, depth);
+                    if (type != DISCOVERED) {
+                        state.completed = Math.max(state.completed, depth);
+                    }
+                    if (type == FAILED) {
+                        state.error = error;
+                    }
+                }
+            } catch (EOFException e) {
+                return covered;
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new EOFException("Torn record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] segments(int covered) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            return StreamSupport.stream(files.spliterator(), false)
+                    .map(file -> SEGMENT.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                    .filter(index -> index > covered)
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    private Path segment(int index) {
+        return directory.resolve("journal-" + index);
+    }
+
+    private FileChannel open(int index) throws IOException {
+        FileChannel result = FileChannel.open(segment(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        try {
+            syncDirectory();
+        } catch (IOException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Forces entries of the directory to disk, so created and renamed files survive a crash
+     * and segments aren't deleted before the snapshot, which covers them, is durable.
+     * It's skipped on platforms, where directories can't be opened.
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes buffered records and a final snapshot.
+     */
+    @Override
+    public void close() {
+        flusher.close();
+        flush();
+        segmentLock.lock();
+        try {
+            channel.close();
+            compactor.submit(() -> compact(segment));
+        } catch (IOException e) {
+            System.err.println("Failed to close crawl journal: " + e.getMessage());
+        } finally {
+            segmentLock.unlock();
+        }
+        compactor.close();
+    }
+}
@@ -0,0 +1,165 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Exact up to fingerprint collisions {@link VisitedSet}, which keeps 128-bit MurmurHash3 fingerprints of URLs
+ * and their depths in primitive open-addressing tables. Fingerprints are split between
+ * {@link #SEGMENTS} independently locked and resized segments.
+ */
+public class FingerprintVisitedSet implements VisitedSet {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static class Segment {
+        private long[] keys = new long[2 * INITIAL_CAPACITY];
+        private int[] depths = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private synchronized int raise(long high, long low, int depth) {
+            int slot = find(keys, high, low);
+            if (depths[slot] != 0) {
+                int previous = depths[slot];
+                depths[slot] = Math.max(previous, depth);
+                return previous;
+            }
+            keys[2 * slot] = high;
+            keys[2 * slot + 1] = low;
+            depths[slot] = depth;
+            if (++size > depths.length / 4 * 3) {
+                resize();
+            }
+            return 0;
+        }
+
+        private void resize() {
+            long[] newKeys = new long[keys.length * 2];
+            int[] newDepths = new int[depths.length * 2];
+            for (int i = 0; i < depths.length; i++) {
+                if (depths[i] != 0) {
+                    int slot = find(newKeys, keys[2 * i], keys[2 * i + 1]);
+                    newKeys[2 * slot] = keys[2 * i];
+                    newKeys[2 * slot + 1] = keys[2 * i + 1];
+                    newDepths[slot] = depths[i];
+                }
+            }
+            keys = newKeys;
+            depths = newDepths;
+        }
+
+        /**
+         * Returns slot of the fingerprint or the first free slot by linear probing.
+         * Free slots have zero keys, which fingerprints never have.
+         */
+        private static int find(long[] keys, long high, long low) {
+            int mask = keys.length / 2 - 1;
+            int slot = (int) low & mask;
+            while ((keys[2 * slot] != 0 || keys[2 * slot + 1] != 0)
+                    && (keys[2 * slot] != high || keys[2 * slot + 1] != low)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private synchronized long memoryBytes() {
+            return keys.length * (long) Long.BYTES + depths.length * (long) Integer.BYTES;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public FingerprintVisitedSet() {
+        Arrays.setAll(segments, i -> new Segment());
+    }
+
+    @Override
+    public int raise(String url, int depth) {
+        long[] fingerprint = fingerprint(url);
+        long high = fingerprint[0];
+        long low = fingerprint[1] == 0 && high == 0 ? 1 : fingerprint[1];
+        return segments[(int) (high >>> 58) & (SEGMENTS - 1)].raise(high, low, Math.max(depth, 1));
+    }
+
+    @Override
+    public long size() {
+        return Arrays.stream(segments).mapToLong(Segment::size).sum();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return Arrays.stream(segments).mapToLong(Segment::memoryBytes).sum();
+    }
+
+    /**
+     * Returns MurmurHash3 x64 128-bit hash of UTF-8 bytes of {@code url} with zero seed.
+     */
+    static long[] fingerprint(String url) {
+        byte[] data = url.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = (long) LONG.get(data, 16 * i);
+            long k2 = (long) LONG.get(data, 16 * i + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tail = 16 * blocks;
+        int rest = data.length - tail;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = rest - 1; i >= 8; i--) {
+            k2 ^= (data[tail + i] & 0xFFL) << (8 * (i - 8));
+        }
+        for (int i = Math.min(rest, 8) - 1; i >= 0; i--) {
+            k1 ^= (data[tail + i] & 0xFFL) << (8 * i);
+        }
+        if (rest > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (rest > 0) {
+            h1 ^= mixK1(k1);
+        }
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = finalMix(h1);
+        h2 = finalMix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long finalMix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,314 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules downloads of all hosts on a shared pool with at most {@code slots} running tasks.
+ * <p>
+ * Every host has its own queue, runs at most {@code perHost} tasks at once and starts at most
+ * {@code rate} tasks per second, limited by a token bucket with one second of burst.
+ * Hosts with queued tasks are served by weighted round robin: a host starts up to its weight
+ * of tasks in a row, so a huge site can't take all slots while other hosts wait.
+ * Submitting to a host with {@code maxQueue} queued tasks blocks until its queue shrinks.
+ * Hosts, which stay idle for {@link #IDLE_TIMEOUT_NANOS} with full bucket, are evicted.
+ * <p>
+ * State is guarded by a {@link ReentrantLock}, which tasks finishing on virtual threads take
+ * without pinning their carriers, and blocked submitters wait on the condition of their host only.
+ */
+public class HostScheduler implements AutoCloseable {
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Snapshot of one host: queued and running tasks, completed tasks and their rate.
+     */
+    public static class HostStats {
+        private final String host;
+        private final int queued;
+        private final int running;
+        private final long completed;
+        private final double perSecond;
+
+        private HostStats(String host, int queued, int running, long completed, double perSecond) {
+            this.host = host;
+            this.queued = queued;
+            this.running = running;
+            this.completed = completed;
+            this.perSecond = perSecond;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public double getPerSecond() {
+            return perSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d queued, %d running, %d completed (%.1f/s)",
+                    host, queued, running, completed, perSecond);
+        }
+    }
+
+    private class HostWorker {
+        private final String host;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private final Condition notFull = lock.newCondition();
+        private final long created = System.nanoTime();
+        private int working;
+        private long completed;
+        private int weight;
+        private int deficit;
+        private boolean active;
+        private double tokens = burst;
+        private long refilled = created;
+        private long idleSince = created;
+
+        private HostWorker(String host) {
+            this.host = host;
+            this.weight = weights.getOrDefault(host, 1);
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilled) * rate / NANOS_PER_SECOND);
+            refilled = now;
+        }
+
+        private boolean takeToken(long now) {
+            if (Double.isInfinite(rate)) {
+                return true;
+            }
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private long nanosToToken() {
+            return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / rate);
+        }
+
+        private boolean isIdle(long now) {
+            if (!queue.isEmpty() || working > 0 || now - idleSince < IDLE_TIMEOUT_NANOS) {
+                return false;
+            }
+            if (!Double.isInfinite(rate)) {
+                refill(now);
+                return tokens >= burst;
+            }
+            return true;
+        }
+
+        private HostStats stats(long now) {
+            return new HostStats(host, queue.size(), working, completed,
+                    completed * NANOS_PER_SECOND / Math.max(now - created, 1));
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ExecutorService pool;
+    private final int slots;
+    private final int perHost;
+    private final double rate;
+    private final double burst;
+    private final int maxQueue;
+    private final Map<String, HostWorker> hosts = new HashMap<>();
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final ArrayDeque<HostWorker> active = new ArrayDeque<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "host-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int running;
+    private boolean wakeUpScheduled;
+
+    /**
+     * Creates scheduler. Use {@link Double#POSITIVE_INFINITY} {@code rate} and {@link Integer#MAX_VALUE}
+     * {@code maxQueue} for no limits.
+     */
+    public HostScheduler(ExecutorService pool, int slots, int perHost, double rate, int maxQueue) {
+        if (slots <= 0 || perHost <= 0 || !(rate > 0) || maxQueue <= 0) {
+            throw new IllegalArgumentException("Limits of host scheduler must be positive");
+        }
+        this.pool = pool;
+        this.slots = slots;
+        this.perHost = perHost;
+        this.rate = rate;
+        this.burst = Double.isInfinite(rate) ? 0 : Math.max(1, rate);
+        this.maxQueue = maxQueue;
+        timer.scheduleWithFixedDelay(this::evictIdle, IDLE_TIMEOUT_NANOS, IDLE_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets number of tasks {@code host} starts in a row, when other hosts are waiting too.
+     */
+    public void setWeight(String host, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        lock.lock();
+        try {
+            weights.put(host, weight);
+            HostWorker worker = hosts.get(host);
+            if (worker != null) {
+                worker.weight = weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues {@code task} of {@code host}, waiting while the host queue is full.
+     */
+    public void submit(String host, Runnable task) {
+        lock.lock();
+        try {
+            HostWorker worker = hosts.computeIfAbsent(host, HostWorker::new);
+            while (worker.queue.size() >= maxQueue) {
+                try {
+                    worker.notFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                worker = hosts.computeIfAbsent(host, HostWorker::new);
+            }
+            worker.queue.add(task);
+            if (!worker.active) {
+                worker.active = true;
+                worker.deficit = worker.weight;
+                active.add(worker);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        long wakeUp = Long.MAX_VALUE;
+        int skipped = 0;
+        while (running < slots && skipped < active.size()) {
+            HostWorker worker = active.peekFirst();
+            if (worker.queue.isEmpty()) {
+                active.pollFirst();
+                worker.active = false;
+                continue;
+            }
+            if (worker.working >= perHost) {
+                rotate();
+                skipped++;
+                continue;
+            }
+            if (!worker.takeToken(now)) {
+                wakeUp = Math.min(wakeUp, worker.nanosToToken());
+                rotate();
+                skipped++;
+                continue;
+            }
+            Runnable task = worker.queue.poll();
+            worker.working++;
+            running++;
+            skipped = 0;
+            if (--worker.deficit <= 0) {
+                rotate();
+            }
+            pool.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    completed(worker);
+                }
+            });
+            worker.notFull.signal();
+        }
+        if (wakeUp != Long.MAX_VALUE && !wakeUpScheduled) {
+            wakeUpScheduled = true;
+            timer.schedule(this::wakeUp, wakeUp, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void rotate() {
+        HostWorker worker = active.pollFirst();
+        worker.deficit = worker.weight;
+        active.addLast(worker);
+    }
+
+    private void wakeUp() {
+        lock.lock();
+        try {
+            wakeUpScheduled = false;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completed(HostWorker worker) {
+        lock.lock();
+        try {
+            worker.working--;
+            worker.completed++;
+            running--;
+            if (worker.working == 0 && worker.queue.isEmpty()) {
+                worker.idleSince = System.nanoTime();
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIdle() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            hosts.values().removeIf(worker -> worker.isIdle(now));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns stats of all hosts, which aren't evicted yet.
+     */
+    public List<HostStats> getStats() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            return hosts.values().stream().map(worker -> worker.stats(now)).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
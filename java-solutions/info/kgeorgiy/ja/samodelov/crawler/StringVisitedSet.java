@@ -0,0 +1,40 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exact {@link VisitedSet}, which keeps full URL strings in a {@link ConcurrentHashMap}.
+ */
+public class StringVisitedSet implements VisitedSet {
+    /**
+     * Approximate size of map node, table slot, string and header of its bytes. Small depths are cached boxes.
+     */
+    private static final long ENTRY_OVERHEAD = 32 + 8 + 24 + 16;
+
+    private final ConcurrentHashMap<String, Integer> depths = new ConcurrentHashMap<>();
+    private final LongAdder chars = new LongAdder();
+
+    @Override
+    public int raise(String url, int depth) {
+        int[] previous = new int[1];
+        depths.merge(url, depth, (old, value) -> {
+            previous[0] = old;
+            return Math.max(old, value);
+        });
+        if (previous[0] == 0) {
+            chars.add(url.length());
+        }
+        return previous[0];
+    }
+
+    @Override
+    public long size() {
+        return depths.mappingCount();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return size() * ENTRY_OVERHEAD + chars.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package info.kgeorgiy.ja.samodelov.crawler;
+
+/**
+ * Thread-safe set of URLs reached by one crawl, with the greatest remaining depth every URL was reached with.
+ *
+ * @see StringVisitedSet
+ * @see FingerprintVisitedSet
+ * @see BloomVisitedSet
+ */
+public interface VisitedSet {
+    /**
+     * Records that {@code url} is reached with remaining {@code depth}.
+     *
+     * @return the greatest depth {@code url} was reached with before, or {@code 0} if it's new.
+     * Sets, which don't keep depths, return {@link Integer#MAX_VALUE} for known URLs
+     */
+    int raise(String url, int depth);
+
+    /**
+     * Returns {@code false} if {@link #raise} reports every known URL with {@link Integer#MAX_VALUE} depth.
+     */
+    default boolean keepsDepths() {
+        return true;
+    }
+
+    /**
+     * Returns number of recorded URLs.
+     */
+    long size();
+
+    /**
+     * Returns approximate number of bytes used by the set.
+     */
+    long memoryBytes();
+}
@@ -3,25 +3,81 @@ package info.kgeorgiy.ja.samodelov.crawler;
 import info.kgeorgiy.java.advanced.crawler.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class WebCrawler implements AdvancedCrawler {
+    /**
+     * Maximal number of completed pages, which one crawl keeps to expand them again with greater depth.
+     */
+    private static final int KEPT_PAGES = 1 << 12;
+
+    /**
+     * Threads, which run downloads. At most {@code downloaders} downloads run at once in both modes.
+     */
+    public enum Downloads {
+        /**
+         * Fixed pool of {@code downloaders} platform threads.
+         */
+        PLATFORM,
+        /**
+         * New virtual thread for every download, so thousands of slow downloads don't need thousands of
+         * platform threads. Extraction still runs on the pool of {@code extractors} platform threads.
+         */
+        VIRTUAL
+    }
+
     private final Downloader downloader;
     private final ExecutorService downloadTreads;
     private final ExecutorService extractorTreads;
-    private final int perHost;
-    private final ConcurrentHashMap<String, HostWorker> hostMap = new ConcurrentHashMap<>();
+    private final HostScheduler scheduler;
+    private final Supplier<? extends VisitedSet> visitedSets;
 
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
+        this(downloader, Downloads.PLATFORM, downloaders, extractors, perHost, Double.POSITIVE_INFINITY,
+                Integer.MAX_VALUE, StringVisitedSet::new);
+    }
+
+    /**
+     * Creates crawler, which runs at most {@code downloaders} downloads at once on {@code downloads} threads,
+     * starts at most {@code perHostRate} downloads per second from every host, blocks extraction while a host
+     * has {@code maxHostQueue} queued downloads, and keeps URLs reached by every {@link #download} call
+     * in a new set from {@code visitedSets}. Use {@link Double#POSITIVE_INFINITY} rate
+     * and {@link Integer#MAX_VALUE} queue for no limits.
+     */
+    public WebCrawler(Downloader downloader, Downloads downloads, int downloaders, int extractors, int perHost,
+                      double perHostRate, int maxHostQueue, Supplier<? extends VisitedSet> visitedSets) {
         this.downloader = downloader;
-        this.perHost = perHost;
-        this.downloadTreads = Executors.newFixedThreadPool(downloaders);
+        this.downloadTreads = switch (downloads) {
+            case PLATFORM -> Executors.newFixedThreadPool(downloaders);
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
         this.extractorTreads = Executors.newFixedThreadPool(extractors);
+        this.scheduler = new HostScheduler(downloadTreads, downloaders, perHost, perHostRate, maxHostQueue);
+        this.visitedSets = visitedSets;
+    }
+
+    /**
+     * Sets share of download slots {@code host} gets relative to other busy hosts.
+     */
+    public void setHostWeight(String host, int weight) {
+        scheduler.setWeight(host, weight);
+    }
+
+    /**
+     * Returns queue depth, running downloads and throughput of every recently used host.
+     */
+    public List<HostScheduler.HostStats> getHostStats() {
+        return scheduler.getStats();
     }
 
     @Override
@@ -48,109 +104,324 @@ public class WebCrawler implements AdvancedCrawler {
         }
     }
 
-    private void downloadLinks(String url, Set<String> result, ConcurrentHashMap<String, IOException> exceptions,
-                               Set<String> visitedLinks, Phaser phaser, Set<String> newLayer, int depth, boolean needToAddHosts) {
-        // :NOTE: огромный try
-        //fixed
-        String host;
-        try {
-            host = URLUtils.getHost(url);
-        } catch (MalformedURLException e) {
-            exceptions.put(url, e);
-            return;
+    /**
+     * State of one {@link #download} call. Every link is scheduled as soon as it's extracted, tagged with
+     * remaining depth, and the crawl ends when no download or extraction is pending.
+     * Reached URLs are kept in a {@link VisitedSet} and pages are kept only while they are downloaded
+     * and extracted. A page reached again with greater remaining depth offers its links again with that depth,
+     * so the result is the same as for breadth-first crawl by layers. For that, documents of {@link #KEPT_PAGES}
+     * last completed pages are kept, with links of extracted documents in place of documents themselves.
+     * Pages, which aren't kept anymore or were completed before the crawl was resumed, are downloaded again.
+     */
+    private class Crawl {
+        private final VisitedSet visited = visitedSets.get();
+        private final ConcurrentHashMap<String, Page> pages = new ConcurrentHashMap<>();
+        private final Map<String, Document> kept = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Document> eldest) {
+                return size() > KEPT_PAGES;
+            }
+        };
+        private final Set<String> result = ConcurrentHashMap.newKeySet();
+        private final ConcurrentHashMap<String, IOException> exceptions = new ConcurrentHashMap<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int depth;
+        private final Set<String> hosts;
+        private final CrawlJournal journal;
+
+        private Crawl(int depth, Set<String> hosts, CrawlJournal journal) {
+            this.depth = depth;
+            this.hosts = hosts;
+            this.journal = journal;
+        }
+
+        /**
+         * Restores pages completed before and schedules pages discovered, but not completed, with their depths,
+         * deepest first.
+         */
+        private Crawl resume(Map<String, CrawlJournal.PageState> states) {
+            states.forEach((url, state) -> {
+                if (state.getCompleted() > 0) {
+                    visited.raise(url, state.getCompleted());
+                    if (state.getError() != null) {
+                        exceptions.put(url, new IOException(state.getError()));
+                    } else {
+                        result.add(url);
+                    }
+                }
+            });
+            states.entrySet().stream()
+                    .filter(entry -> entry.getValue().getDiscovered() > entry.getValue().getCompleted())
+                    .sorted(Comparator.comparingInt(
+                            (Map.Entry<String, CrawlJournal.PageState> entry) -> entry.getValue().getDiscovered())
+                            .reversed())
+                    .forEach(entry -> offer(entry.getKey(), entry.getValue().getDiscovered()));
+            return this;
+        }
+
+        private Result run(String url) {
+            if (depth >= 1) {
+                offer(url, depth);
+            }
+            finished();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Result(List.copyOf(result), exceptions);
         }
-        if (!needToAddHosts) {
-            if (!hostMap.containsKey(host)) {
+
+        private void started() {
+            pending.incrementAndGet();
+        }
+
+        private void finished() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        private void offer(String url, int depth) {
+            int previous = discovered(url, depth);
+            if (depth <= previous) {
+                return;
+            }
+            while (true) {
+                Page page = pages.computeIfAbsent(url, key -> new Page());
+                synchronized (page) {
+                    if (page.forgotten) {
+                        continue;
+                    }
+                    if (depth <= page.depth) {
+                        return;
+                    }
+                    page.depth = depth;
+                    if (page.scheduled) {
+                        return;
+                    }
+                    page.scheduled = true;
+                }
+                Document document = null;
+                if (previous != 0) {
+                    synchronized (kept) {
+                        document = kept.remove(url);
+                    }
+                }
+                if (document == null) {
+                    download(url, page, previous != 0);
+                } else {
+                    expandLater(url, page, document, depth);
+                }
+                return;
+            }
+        }
+
+        private void download(String url, Page page, boolean again) {
+            String host;
+            try {
+                host = URLUtils.getHost(url);
+            } catch (MalformedURLException e) {
+                exceptions.put(url, e);
+                failed(url, complete(url, page), e);
                 return;
             }
+            if (hosts != null && !hosts.contains(host) || again && exceptions.containsKey(url)) {
+                complete(url, page);
+                return;
+            }
+            started();
+            scheduler.submit(host, () -> {
+                try {
+                    Document document = downloader.download(url);
+                    result.add(url);
+                    extract(url, page, document);
+                } catch (IOException e) {
+                    int depth = complete(url, page);
+                    if (!again) {
+                        exceptions.put(url, e);
+                        failed(url, depth, e);
+                    }
+                } finally {
+                    finished();
+                }
+            });
+        }
+
+        /**
+         * Forgets {@code page}, which isn't downloaded, and returns the greatest depth it was reached with.
+         */
+        private int complete(String url, Page page) {
+            synchronized (page) {
+                forget(url, page);
+                return page.depth;
+            }
         }
-        HostWorker hostWorker = hostMap.computeIfAbsent(host, string -> new HostWorker());
-        phaser.register();
-        hostWorker.addTask(() -> {
+
+        /**
+         * Forgets {@code page} completed with {@code depth} and keeps its {@code document}, if it may be reached
+         * with greater depth. If the page was reached with greater depth meanwhile, it isn't forgotten
+         * and that depth is returned, otherwise {@code 0}.
+         */
+        private int finish(String url, Page page, int depth, Document document) {
+            synchronized (page) {
+                if (page.depth > depth) {
+                    return page.depth;
+                }
+                if (document != null && depth < this.depth && visited.keepsDepths()) {
+                    synchronized (kept) {
+                        kept.put(url, document);
+                    }
+                }
+                forget(url, page);
+                return 0;
+            }
+        }
+
+        private void forget(String url, Page page) {
+            page.forgotten = true;
+            pages.remove(url, page);
+        }
+
+        /**
+         * Raises {@code url} and journals it. URL, which is too long to be journaled, is reported as error.
+         * When the journal fails, links aren't offered anymore, so the crawl ends with the pending pages,
+         * and then it fails.
+         */
+        private int discovered(String url, int depth) {
+            if (journal == null) {
+                return visited.raise(url, depth);
+            }
             try {
-                Document document = downloader.download(url);
-                result.add(url);
-                visitedLinks.add(url);
-                if (depth != 1) {
-                    phaser.register();
-                    extractorTreads.submit(() -> {
-                        try {
-                            for (var link : document.extractLinks()) {
-                                if (!visitedLinks.contains(link)) {
-                                    visitedLinks.add(link);
-                                    newLayer.add(link);
-                                }
-                            }
-                        } catch (IOException e) {
-                            //
+                return journal.discovered(visited, url, depth);
+            } catch (IllegalArgumentException e) {
+                exceptions.put(url, new IOException(e.getMessage()));
+                return Integer.MAX_VALUE;
+            } catch (UncheckedIOException e) {
+                return Integer.MAX_VALUE;
+            }
+        }
+
+        private void failed(String url, int depth, IOException e) {
+            if (journal != null) {
+                try {
+                    journal.failed(url, depth, e);
+                } catch (UncheckedIOException ignored) {
+                    // crawl fails
+                }
+            }
+        }
+
+        /**
+         * Journals downloaded page as completed, if it's reached with depth {@code 1}, or expands it otherwise.
+         */
+        private void extract(String url, Page page, Document document) {
+            int depth;
+            synchronized (page) {
+                depth = page.depth;
+            }
+            if (depth <= 1) {
+                completed(url, depth);
+                depth = finish(url, page, depth, document);
+                if (depth == 0) {
+                    return;
+                }
+            }
+            expandLater(url, page, document, depth);
+        }
+
+        private void expandLater(String url, Page page, Document document, int depth) {
+            started();
+            extractorTreads.submit(() -> {
+                try {
+                    expand(url, page, document, depth);
+                } finally {
+                    finished();
+                }
+            });
+        }
+
+        /**
+         * Offers links of page with {@code depth} and then journals it as completed,
+         * again for every greater depth the page is reached with meanwhile.
+         */
+        private void expand(String url, Page page, Document document, int depth) {
+            while (depth > 0) {
+                if (document != null && depth > 1) {
+                    try {
+                        List<String> links = document.extractLinks();
+                        document = () -> links;
+                        for (String link : links) {
+                            offer(link, depth - 1);
                         }
-                        phaser.arriveAndDeregister();
-                    });
+                    } catch (IOException e) {
+                        document = null;
+                    }
+                }
+                completed(url, depth);
+                depth = finish(url, page, depth, document);
+            }
+        }
+
+        private void completed(String url, int depth) {
+            if (journal != null) {
+                try {
+                    journal.completed(url, depth);
+                } catch (UncheckedIOException ignored) {
+                    // crawl fails
                 }
-            } catch (IOException e) {
-                exceptions.put(url, e);
             }
-            phaser.arriveAndDeregister();
-            hostWorker.runTask();
-        });
+        }
+    }
+
+    /**
+     * Page, which is downloaded or extracted. It's forgotten, when it's removed from the crawl.
+     */
+    private static class Page {
+        private int depth;
+        private boolean scheduled;
+        private boolean forgotten;
     }
 
     @Override
     public void close() {
         extractorTreads.close();
         downloadTreads.close();
+        scheduler.close();
         // :NOTE: join
         //fixed
     }
 
     @Override
     public Result download(String url, int depth, List<String> hosts) {
-        boolean needToAddHosts = true;
-        if (hosts != null) {
-            needToAddHosts = false;
-            hosts.forEach(host -> hostMap.computeIfAbsent(host, string -> new HostWorker()));
-        }
-        Set<String> result = ConcurrentHashMap.newKeySet();
-        Set<String> visitedLinks = ConcurrentHashMap.newKeySet();
-        Set<String> newLayer = ConcurrentHashMap.newKeySet();
-        Deque<String> queue = new ArrayDeque<>();
-        ConcurrentHashMap<String, IOException> exceptions = new ConcurrentHashMap<>();
-        Phaser phaser = new Phaser(1);
-
-        queue.add(url);
-        for (int i = depth; i >= 1; i--) {
-            for (var link : queue) {
-                downloadLinks(link, result, exceptions, visitedLinks, phaser, newLayer, i, needToAddHosts);
-            }
-            phaser.arriveAndAwaitAdvance();
-            queue.clear();
-            queue.addAll(newLayer);
-            newLayer.clear();
-        }
-        return new Result(result.stream().toList(), exceptions);
+        return new Crawl(depth, hosts == null ? null : Set.copyOf(hosts), null).run(url);
     }
 
-    private class HostWorker {
-        // :NOTE: не нужно Concurrent
-        //fixed
-        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
-        private int working = 0;
-
-        private synchronized void addTask(Runnable task) {
-            if (working >= perHost) {
-                queue.add(task);
-            } else {
-                downloadTreads.submit(task);
-                working++;
-            }
+    /**
+     * Crawls like {@link #download(String, int, List)}, journaling discovered and completed pages
+     * to {@code directory}. If the directory holds journal of the same crawl, which was interrupted, it's resumed:
+     * pages completed before are restored to the result without downloading, and pages discovered,
+     * but not completed, are crawled with the depths they were discovered with.
+     *
+     * @throws IOException if the journal can't be opened, belongs to a crawl with another URL, depth or hosts,
+     * or fails during the crawl. Then the crawl may be resumed from the records written before the failure.
+     */
+    public Result download(String url, int depth, List<String> hosts, Path directory) throws IOException {
+        try (CrawlJournal journal = new CrawlJournal(directory, url, depth, hosts == null ? null : Set.copyOf(hosts))) {
+            return download(url, depth, hosts, journal);
         }
+    }
 
-        private synchronized void runTask() {
-            if (queue.peek() != null) {
-                downloadTreads.submit(queue.poll());
-            } else {
-                working--;
-            }
-        }
+    /**
+     * Crawls like {@link #download(String, int, List, Path)} with {@code journal} opened for the same
+     * URL, depth and hosts. The journal is synced, but not closed.
+     */
+    public Result download(String url, int depth, List<String> hosts, CrawlJournal journal) throws IOException {
+        Result result = new Crawl(depth, hosts == null ? null : Set.copyOf(hosts), journal)
+                .resume(journal.recover())
+                .run(url);
+        journal.sync();
+        return result;
     }
 }
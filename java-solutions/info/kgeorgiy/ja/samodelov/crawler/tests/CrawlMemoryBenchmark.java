@@ -0,0 +1,130 @@
+package info.kgeorgiy.ja.samodelov.crawler.tests;
+
+import info.kgeorgiy.ja.samodelov.crawler.BloomVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.FingerprintVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.StringVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.VisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Measures peak heap retained by a whole {@link WebCrawler} crawl per reached URL, which includes the visited set,
+ * pages in progress, pages kept for greater depth and the result. Links of generated pages aren't stored,
+ * so they take no heap before they are reached, but every document holds a body of {@link #PAGE_BYTES},
+ * as downloaded documents do. Every page links to {@link #LINKS} pages of the crawled hosts
+ * and {@link #EXTERNAL_LINKS} pages of another host, which are reached, but aren't downloaded.
+ * Run every set in a fresh JVM.
+ * <p>
+ * Usage: {@code CrawlMemoryBenchmark string|fingerprint|bloom [pages [depth]]}
+ */
+public class CrawlMemoryBenchmark {
+    private static final int HOSTS = 100;
+    private static final int LINKS = 4;
+    private static final int EXTERNAL_LINKS = 16;
+    private static final int PAGE_BYTES = 4096;
+    private static final double BLOOM_FPP = 0.01;
+    private static final long SAMPLE_MILLIS = 200;
+
+    private static String url(int page) {
+        return "http://host" + page % HOSTS + ".example.com/section/" + page / HOSTS + "/page" + page + ".html";
+    }
+
+    /**
+     * Generated page, which holds its body, but computes its links only when they are extracted.
+     */
+    private static class Page implements Document {
+        private final int page;
+        private final int pages;
+        private final byte[] body = new byte[PAGE_BYTES];
+
+        private Page(int page, int pages) {
+            this.page = page;
+            this.pages = pages;
+        }
+
+        @Override
+        public List<String> extractLinks() {
+            List<String> links = new ArrayList<>(LINKS + EXTERNAL_LINKS);
+            long state = page * 0x9E3779B97F4A7C15L;
+            for (int i = 0; i < LINKS; i++) {
+                state = (state ^ (state >>> 31)) * 0xBF58476D1CE4E5B9L + i;
+                links.add(url((int) Long.remainderUnsigned(state, pages)));
+            }
+            for (int i = 0; i < EXTERNAL_LINKS; i++) {
+                links.add("http://external.example.org/from/" + page + "/link" + i + ".html");
+            }
+            return links;
+        }
+    }
+
+    private static class GraphDownloader implements Downloader {
+        private final int pages;
+
+        private GraphDownloader(int pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public Document download(String url) {
+            return new Page(Integer.parseInt(url.substring(url.lastIndexOf("page") + 4, url.length() - 5)), pages);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String kind = args.length > 0 ? args[0] : "fingerprint";
+        int pages = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        Supplier<VisitedSet> sets = switch (kind) {
+            case "string" -> StringVisitedSet::new;
+            case "fingerprint" -> FingerprintVisitedSet::new;
+            case "bloom" -> () -> new BloomVisitedSet((long) pages * (1 + EXTERNAL_LINKS), BLOOM_FPP);
+            default -> throw new IllegalArgumentException("Unknown set " + kind);
+        };
+        List<String> hosts = new ArrayList<>();
+        for (int i = 0; i < HOSTS; i++) {
+            hosts.add("host" + i + ".example.com");
+        }
+
+        for (int round = 0; round < 2; round++) {
+            long before = usedHeap();
+            AtomicLong peak = new AtomicLong();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleWithFixedDelay(() -> peak.accumulateAndGet(usedHeap(), Math::max),
+                    SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            Result result;
+            try (WebCrawler crawler = new WebCrawler(new GraphDownloader(pages), WebCrawler.Downloads.PLATFORM,
+                    8, 2, 8, Double.POSITIVE_INFINITY, Integer.MAX_VALUE, sets)) {
+                result = crawler.download(url(0), depth, hosts);
+            }
+            long time = System.nanoTime() - start;
+            sampler.shutdown();
+            sampler.awaitTermination(1, TimeUnit.MINUTES);
+
+            long downloaded = result.getDownloaded().size();
+            long reached = downloaded * (1 + EXTERNAL_LINKS);
+            System.out.printf("%s: %d pages downloaded, about %d urls reached in %d ms, " +
+                            "peak heap %.1f MiB, %.1f B/url%n",
+                    kind, downloaded, reached, time / 1_000_000,
+                    (peak.get() - before) / 1048576.0, (double) (peak.get() - before) / reached);
+        }
+    }
+}
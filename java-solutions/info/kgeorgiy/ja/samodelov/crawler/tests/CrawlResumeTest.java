@@ -0,0 +1,156 @@
+package info.kgeorgiy.ja.samodelov.crawler.tests;
+
+import info.kgeorgiy.ja.samodelov.crawler.CrawlJournal;
+import info.kgeorgiy.ja.samodelov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CrawlResumeTest extends Assert {
+    private static final int PAGES = 300;
+    private static final int LINKS = 3;
+    private static final int DEPTH = 5;
+    private static final int KILLED_AFTER = 40;
+    private static final String START = url(0);
+
+    /**
+     * Random graph on one host, where every tenth page is broken.
+     */
+    private static class GraphDownloader implements Downloader {
+        private final Map<String, List<String>> links = new HashMap<>();
+        private final List<String> downloaded = Collections.synchronizedList(new ArrayList<>());
+
+        private GraphDownloader() {
+            Random random = new Random(5);
+            for (int i = 0; i < PAGES; i++) {
+                List<String> pageLinks = new ArrayList<>();
+                for (int j = 0; j < LINKS; j++) {
+                    pageLinks.add(url(random.nextInt(PAGES)));
+                }
+                links.put(url(i), pageLinks);
+            }
+        }
+
+        @Override
+        public Document download(String url) throws IOException {
+            downloaded.add(url);
+            if (url.hashCode() % 10 == 0) {
+                throw new IOException("Broken page " + url);
+            }
+            List<String> pageLinks = links.get(url);
+            return () -> pageLinks;
+        }
+    }
+
+    private static String url(int page) {
+        return "http://host.test/page" + page;
+    }
+
+    /**
+     * Crawls to the journal in {@code args[0]}, printing every download, and hangs on download
+     * {@link #KILLED_AFTER}. Before that it syncs the journal and prints pages journaled as completed or failed
+     * before the sync.
+     */
+    public static void main(String[] args) throws IOException {
+        Set<String> journaled = ConcurrentHashMap.newKeySet();
+        try (CrawlJournal journal = new CrawlJournal(Path.of(args[0]), START, DEPTH, null) {
+            @Override
+            public void completed(String url, int depth) {
+                super.completed(url, depth);
+                journaled.add(url);
+            }
+
+            @Override
+            public void failed(String url, int depth, IOException e) {
+                super.failed(url, depth, e);
+                journaled.add(url);
+            }
+        }) {
+            Downloader downloader = new GraphDownloader() {
+                @Override
+                public Document download(String url) throws IOException {
+                    if (super.downloaded.size() == KILLED_AFTER) {
+                        List<String> completed = List.copyOf(journaled);
+                        journal.sync();
+                        completed.forEach(page -> System.out.println("journaled " + page));
+                        System.out.println("killed " + url);
+                        try {
+                            Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    System.out.println("downloaded " + url);
+                    return super.download(url);
+                }
+            };
+            try (WebCrawler crawler = new WebCrawler(downloader, 1, 1, 1)) {
+                crawler.download(START, DEPTH, null, journal);
+            }
+        }
+    }
+
+    /**
+     * Runs crawl in another process, kills it and returns pages, which were journaled as completed.
+     */
+    private static Set<String> killedCrawl(Path journal) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElseThrow();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                CrawlResumeTest.class.getName(), journal.toString()).redirectErrorStream(true).start();
+        Set<String> downloaded = new HashSet<>();
+        Set<String> completed = new HashSet<>();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null && !line.startsWith("killed ")) {
+                if (line.startsWith("downloaded ")) {
+                    downloaded.add(line.substring("downloaded ".length()));
+                } else if (line.startsWith("journaled ")) {
+                    completed.add(line.substring("journaled ".length()));
+                }
+            }
+            assertNotNull("Crawl has finished before it was killed", line);
+        } finally {
+            process.destroyForcibly().waitFor();
+        }
+        assertEquals(KILLED_AFTER, downloaded.size());
+        assertTrue("Journaled page wasn't downloaded", downloaded.containsAll(completed));
+        assertFalse("No page is journaled as completed", completed.isEmpty());
+        return completed;
+    }
+
+    @Test(timeout = 60_000)
+    public void testResumeAfterKill() throws IOException, InterruptedException {
+        Result expected;
+        try (WebCrawler crawler = new WebCrawler(new GraphDownloader(), 1, 1, 1)) {
+            expected = crawler.download(START, DEPTH);
+        }
+
+        Path journal = Files.createTempDirectory("crawl-journal");
+        Set<String> completed = killedCrawl(journal);
+
+        GraphDownloader downloader = new GraphDownloader();
+        Result resumed;
+        try (WebCrawler crawler = new WebCrawler(downloader, 1, 1, 1)) {
+            resumed = crawler.download(START, DEPTH, null, journal);
+        }
+        assertEquals(new HashSet<>(expected.getDownloaded()), new HashSet<>(resumed.getDownloaded()));
+        assertEquals(expected.getDownloaded().size(), resumed.getDownloaded().size());
+        assertEquals(expected.getErrors().keySet(), resumed.getErrors().keySet());
+        for (String url : downloader.downloaded) {
+            assertFalse("Completed page is downloaded again: " + url, completed.contains(url));
+        }
+        assertEquals(new HashSet<>(downloader.downloaded).size(), downloader.downloaded.size());
+    }
+}
@@ -0,0 +1,71 @@
+package info.kgeorgiy.ja.samodelov.crawler.tests;
+
+import info.kgeorgiy.ja.samodelov.crawler.StringVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crawls a root page with {@code downloads} links to pages on {@link #HOSTS} hosts, which answer
+ * in {@link #LATENCY_MILLIS}, with as many download slots as links, and reports wall-clock time,
+ * peak number of threads and peak resident memory. Run every mode in a fresh JVM.
+ * <p>
+ * Usage: {@code DownloadsBenchmark PLATFORM|VIRTUAL [downloads]}
+ */
+public class DownloadsBenchmark {
+    private static final int HOSTS = 100;
+    private static final int LATENCY_MILLIS = 1000;
+    private static final int EXTRACTORS = 4;
+    private static final String ROOT = "http://root.test/";
+
+    /**
+     * Returns peak resident set size in MiB or {@code -1} if it's unknown.
+     */
+    private static long peakResidentMemory() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                }
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        WebCrawler.Downloads mode = WebCrawler.Downloads.valueOf(args.length > 0 ? args[0] : "VIRTUAL");
+        int downloads = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < downloads; i++) {
+            links.add("http://host" + i % HOSTS + ".test/page" + i);
+        }
+        Downloader downloader = url -> {
+            if (url.equals(ROOT)) {
+                return () -> links;
+            }
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return List::of;
+        };
+        long start = System.nanoTime();
+        try (WebCrawler crawler = new WebCrawler(downloader, mode, downloads, EXTRACTORS, downloads,
+                Double.POSITIVE_INFINITY, Integer.MAX_VALUE, StringVisitedSet::new)) {
+            Result result = crawler.download(ROOT, 2);
+            System.out.printf("%s: %d pages in %d ms, peak threads %d, peak RSS %d MiB%n",
+                    mode, result.getDownloaded().size(), (System.nanoTime() - start) / 1_000_000,
+                    ManagementFactory.getThreadMXBean().getPeakThreadCount(), peakResidentMemory());
+        }
+    }
+}
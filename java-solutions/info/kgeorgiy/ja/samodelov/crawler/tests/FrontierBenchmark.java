@@ -0,0 +1,108 @@
+package info.kgeorgiy.ja.samodelov.crawler.tests;
+
+import info.kgeorgiy.ja.samodelov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares wall-clock time of {@link WebCrawler} with crawl by depth layers, which waits for every page
+ * of a layer before the next one starts, on a simulated graph, where one host is {@link #SLOW_MILLIS} slow.
+ * <p>
+ * Usage: {@code FrontierBenchmark [pages [depth [rounds]]]}
+ */
+public class FrontierBenchmark {
+    private static final int HOSTS = 8;
+    private static final int LINKS = 4;
+    private static final int SLOW_MILLIS = 40;
+    private static final int FAST_MILLIS = 2;
+    private static final int DOWNLOADERS = 16;
+    private static final int EXTRACTORS = 4;
+
+    private static class GraphDownloader implements Downloader {
+        private final Map<String, List<String>> links = new HashMap<>();
+
+        private GraphDownloader(int pages) {
+            Random random = new Random(7);
+            for (int i = 0; i < pages; i++) {
+                List<String> pageLinks = new ArrayList<>();
+                for (int j = 0; j < LINKS; j++) {
+                    pageLinks.add(url(random.nextInt(pages)));
+                }
+                links.put(url(i), pageLinks);
+            }
+        }
+
+        private static String url(int page) {
+            return "http://host" + page % HOSTS + ".test/page" + page;
+        }
+
+        @Override
+        public Document download(String url) throws IOException {
+            try {
+                Thread.sleep(URLUtils.getHost(url).equals("host0.test") ? SLOW_MILLIS : FAST_MILLIS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            List<String> pageLinks = links.get(url);
+            return () -> pageLinks;
+        }
+    }
+
+    /**
+     * Baseline crawl by layers with the same number of downloaders.
+     */
+    private static Set<String> layered(Downloader downloader, String url, int depth) throws InterruptedException {
+        Set<String> visited = new HashSet<>(Set.of(url));
+        List<String> layer = List.of(url);
+        try (ExecutorService pool = Executors.newFixedThreadPool(DOWNLOADERS)) {
+            for (int i = depth; i >= 1 && !layer.isEmpty(); i--) {
+                List<Future<List<String>>> links = new ArrayList<>();
+                for (String page : layer) {
+                    links.add(pool.submit(() -> downloader.download(page).extractLinks()));
+                }
+                List<String> next = new ArrayList<>();
+                for (Future<List<String>> future : links) {
+                    try {
+                        for (String link : future.get()) {
+                            if (i > 1 && visited.add(link)) {
+                                next.add(link);
+                            }
+                        }
+                    } catch (ExecutionException e) {
+                        // broken page
+                    }
+                }
+                layer = next;
+            }
+        }
+        return visited;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        GraphDownloader downloader = new GraphDownloader(pages);
+        String start = GraphDownloader.url(1);
+        for (int round = 0; round < rounds; round++) {
+            long begin = System.nanoTime();
+            Set<String> expected = layered(downloader, start, depth);
+            long layered = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            Result result;
+            try (WebCrawler crawler = new WebCrawler(downloader, DOWNLOADERS, EXTRACTORS, DOWNLOADERS)) {
+                result = crawler.download(start, depth);
+            }
+            long streaming = System.nanoTime() - begin;
+            System.out.printf("%d pages: layered %d ms, streaming %d ms, same result: %b%n",
+                    result.getDownloaded().size(), layered / 1_000_000, streaming / 1_000_000,
+                    expected.equals(new HashSet<>(result.getDownloaded())));
+        }
+    }
+}
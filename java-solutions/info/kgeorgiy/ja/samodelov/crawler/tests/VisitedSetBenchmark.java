@@ -0,0 +1,81 @@
+package info.kgeorgiy.ja.samodelov.crawler.tests;
+
+import info.kgeorgiy.ja.samodelov.crawler.BloomVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.FingerprintVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.StringVisitedSet;
+import info.kgeorgiy.ja.samodelov.crawler.VisitedSet;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures heap retained by a visited set per URL, which includes URL strings kept by the set,
+ * insert and lookup throughput on prepared URLs and false positive rate. Run every set in a fresh JVM.
+ * <p>
+ * Usage: {@code VisitedSetBenchmark string|fingerprint|bloom [urls]}
+ */
+public class VisitedSetBenchmark {
+    private static final double BLOOM_FPP = 0.01;
+    private static final int PROBES = 1_000_000;
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String url(int i) {
+        return "http://host" + i % 1000 + ".example.com/section/" + i / 1000 + "/page-" + i + ".html";
+    }
+
+    public static void main(String[] args) {
+        String kind = args.length > 0 ? args[0] : "fingerprint";
+        int urls = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Supplier<VisitedSet> sets = switch (kind) {
+            case "string" -> StringVisitedSet::new;
+            case "fingerprint" -> FingerprintVisitedSet::new;
+            case "bloom" -> () -> new BloomVisitedSet(urls, BLOOM_FPP);
+            default -> throw new IllegalArgumentException("Unknown set " + kind);
+        };
+        String[] reached = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            reached[i] = url(i);
+        }
+        for (int round = 0; round < 2; round++) {
+            long before = usedHeap();
+            VisitedSet retained = sets.get();
+            for (int i = 0; i < urls; i++) {
+                retained.raise(url(i), 1);
+            }
+            long heap = usedHeap() - before;
+            double estimate = (double) retained.memoryBytes() / retained.size();
+            retained = null;
+
+            VisitedSet set = sets.get();
+            long start = System.nanoTime();
+            for (String url : reached) {
+                set.raise(url, 1);
+            }
+            long insert = System.nanoTime() - start;
+            start = System.nanoTime();
+            int known = 0;
+            for (String url : reached) {
+                if (set.raise(url, 1) != 0) {
+                    known++;
+                }
+            }
+            long lookup = System.nanoTime() - start;
+            int falsePositives = 0;
+            for (int i = 0; i < PROBES; i++) {
+                if (set.raise("http://other.example.org/" + i, 1) != 0) {
+                    falsePositives++;
+                }
+            }
+            System.out.printf("%s: %d urls, heap %.1f B/url (estimate %.1f B/url), insert %.0f ns/url, " +
+                            "lookup %.0f ns/url, known %d, false positives %.3f%%%n",
+                    kind, urls, (double) heap / urls, estimate,
+                    (double) insert / urls, (double) lookup / urls, known, 100.0 * falsePositives / PROBES);
+        }
+    }
+}
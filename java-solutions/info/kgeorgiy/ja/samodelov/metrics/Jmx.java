@@ -0,0 +1,47 @@
+package info.kgeorgiy.ja.samodelov.metrics;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registration of metrics beans in the platform MBean server. Metrics work the same when registration fails,
+ * so failures are only reported.
+ */
+public class Jmx {
+    private Jmx() {
+    }
+
+    /**
+     * Registers {@code bean} with {@code name}.
+     *
+     * @return name of the registered bean or {@code null} if it wasn't registered.
+     */
+    public static ObjectName register(Object bean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            System.err.println("Metrics weren't registered in JMX: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters bean returned by {@link #register}, if any.
+     */
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (JMException e) {
+            System.err.println("Metrics weren't unregistered from JMX: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package info.kgeorgiy.ja.samodelov.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of durations with power-of-two buckets:
+ * bucket {@code i} counts durations in {@code [2^(i-1), 2^i)} nanoseconds, bucket {@code 0} counts zeros.
+ */
+public class LogHistogram {
+    public static final int BUCKETS = Long.SIZE + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    public long[] toArray() {
+        long[] result = new long[buckets.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns exclusive upper bound of {@code bucket} in nanoseconds.
+     */
+    public static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : 1L << Math.min(bucket, Long.SIZE - 2);
+    }
+
+    /**
+     * Returns upper bound in nanoseconds, which isn't exceeded by {@code quantile} of durations in {@code buckets}.
+     */
+    public static long quantile(long[] buckets, double quantile) {
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen > 0 && seen >= quantile * total) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,214 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Finds groups of files with equal content.
+ * Files are grouped by size, then by hash of first and last {@link #SAMPLE_SIZE} bytes,
+ * and only files which still collide are fully hashed.
+ */
+public class DuplicateFinder {
+    public static final int SAMPLE_SIZE = 4096;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static class FileInfo {
+        private final Path path;
+        private final long size;
+        private final BasicFileAttributes attrs;
+
+        private FileInfo(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.size = attrs.size();
+            this.attrs = attrs;
+        }
+    }
+
+    private final FileHasher hasher;
+    private final ExecutorService executor;
+    private final HashCache cache;
+    private final LongAdder bytesRead = new LongAdder();
+    private long bytesTotal;
+    private long files;
+    private long errors;
+    private long groups;
+    private long duplicates;
+
+    /**
+     * Creates finder, which hashes files on {@code executor} or on the calling thread if it's {@code null}.
+     */
+    public DuplicateFinder(FileHasher hasher, ExecutorService executor) {
+        this(hasher, executor, null);
+    }
+
+    /**
+     * Creates finder, which takes full hashes of unchanged files from {@code cache} if it isn't {@code null}.
+     * Cached entries of all walked files are kept, even if their hashes weren't needed.
+     */
+    public DuplicateFinder(FileHasher hasher, ExecutorService executor, HashCache cache) {
+        this.hasher = hasher;
+        this.executor = executor;
+        this.cache = cache;
+    }
+
+    /**
+     * Reads roots from {@code input} and writes groups of duplicates to {@code output}.
+     * Each group is written as {@code hash path} lines and groups are separated by empty lines.
+     */
+    public void find(BufferedReader input, Writer output) throws IOException {
+        Map<Long, List<FileInfo>> bySize = new LinkedHashMap<>();
+        Set<Path> seen = new HashSet<>();
+        String pathString;
+        while ((pathString = input.readLine()) != null) {
+            try {
+                collect(Paths.get(pathString), bySize, seen);
+            } catch (InvalidPathException | IOException e) {
+                errors++;
+            }
+        }
+
+        for (List<FileInfo> sameSize : bySize.values()) {
+            if (sameSize.size() < 2) {
+                continue;
+            }
+            Collection<List<FileInfo>> candidates = sameSize.get(0).size <= 2 * SAMPLE_SIZE
+                    ? List.of(sameSize)
+                    : group(sameSize, this::sample).values();
+            for (List<FileInfo> candidate : candidates) {
+                for (Map.Entry<String, List<FileInfo>> group : group(candidate, this::fullHash).entrySet()) {
+                    writeGroup(group.getKey(), group.getValue(), output);
+                }
+            }
+        }
+    }
+
+    private void collect(Path root, Map<Long, List<FileInfo>> bySize, Set<Path> seen) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && seen.add(file.toAbsolutePath().normalize())) {
+                    files++;
+                    bytesTotal += attrs.size();
+                    bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(new FileInfo(file, attrs));
+                    if (cache != null) {
+                        cache.retain(file, attrs);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                errors++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Map<String, List<FileInfo>> group(List<FileInfo> infos, Function<FileInfo, String> key) throws IOException {
+        List<String> keys = map(infos, key);
+        Map<String, List<FileInfo>> groupsByKey = new LinkedHashMap<>();
+        for (int i = 0; i < infos.size(); i++) {
+            if (keys.get(i) == null) {
+                errors++;
+            } else {
+                groupsByKey.computeIfAbsent(keys.get(i), k -> new ArrayList<>()).add(infos.get(i));
+            }
+        }
+        groupsByKey.values().removeIf(group -> group.size() < 2);
+        return groupsByKey;
+    }
+
+    private List<String> map(List<FileInfo> infos, Function<FileInfo, String> function) throws IOException {
+        if (executor == null) {
+            return infos.stream().map(function).toList();
+        }
+        List<Future<String>> futures = infos.stream().map(info -> executor.submit(() -> function.apply(info))).toList();
+        List<String> result = new ArrayList<>(futures.size());
+        try {
+            for (Future<String> future : futures) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for hash was interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Hashing was failed", e.getCause());
+        }
+        return result;
+    }
+
+    private String sample(FileInfo info) {
+        ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+        XxHash64 function = new XxHash64();
+        try (FileChannel channel = FileChannel.open(info.path)) {
+            for (long position : new long[]{0, info.size - SAMPLE_SIZE}) {
+                buffer.clear();
+                int read;
+                while (buffer.hasRemaining() && (read = channel.read(buffer, position + buffer.position())) >= 0) {
+                    bytesRead.add(read);
+                }
+                buffer.flip();
+                function.update(buffer);
+            }
+            return HexFormat.of().formatHex(function.digest());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String fullHash(FileInfo info) {
+        if (cache != null) {
+            byte[] cached = cache.get(info.path, info.attrs);
+            if (cached != null) {
+                return hasher.toHex(cached);
+            }
+        }
+        try {
+            byte[] hash = hasher.hash(info.path);
+            bytesRead.add(info.size);
+            if (cache != null) {
+                cache.put(info.path, info.attrs, hash);
+            }
+            return hasher.toHex(hash);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeGroup(String hash, List<FileInfo> group, Writer output) throws IOException {
+        if (groups > 0) {
+            output.write(LINE_SEPARATOR);
+        }
+        groups++;
+        duplicates += group.size() - 1;
+        for (FileInfo info : group) {
+            output.write(hash);
+            output.write(' ');
+            output.write(info.path.toString());
+            output.write(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Returns human-readable summary of the last search.
+     */
+    public String getReport() {
+        long read = bytesRead.sum();
+        return String.format("Duplicates: %d groups, %d redundant files of %d files, %d errors; " +
+                        "read %d of %d bytes, %d bytes skipped",
+                groups, duplicates, files, errors, read, bytesTotal, Math.max(bytesTotal - read, 0));
+    }
+}
@@ -0,0 +1,7 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+public class DuplicateWalk extends Walker {
+    public static void main(String[] args) {
+        invoke(args, Walker.DUPLICATES);
+    }
+}
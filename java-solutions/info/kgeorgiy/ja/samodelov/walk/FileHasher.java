@@ -0,0 +1,367 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Thread-safe file hasher, which computes one or several digests in a single read pass.
+ * Files up to {@link #SMALL_FILE_SIZE} bytes are read in one shot into a heap buffer,
+ * larger files are streamed through a direct buffer of configurable size.
+ * <p>
+ * By default every thread gets its own buffers. With bounded number of contexts buffers are shared,
+ * so at most that number of files is read at once and total buffer memory is bounded,
+ * which is required when files are hashed on virtual threads.
+ * <p>
+ * In tree mode every file is split into chunks of fixed size, which are hashed in parallel in
+ * {@link ForkJoinPool#commonPool()}. Leaf digest is {@code H(0x00 || chunk)}, node digest is
+ * {@code H(0x01 || left || right)}, where left subtree gets first {@code ceil(n / 2)} of {@code n} chunks,
+ * and file digest is the root digest, so it differs from flat digest of the file.
+ * Chunks are read with per-thread buffers of pool workers even if contexts are bounded, so tree mode adds up to
+ * {@code parallelism * (bufferSize + SMALL_FILE_SIZE)} bytes to the bound. Shared contexts aren't used there,
+ * since chunk tasks waiting for contexts held by files, which wait for these tasks, would deadlock.
+ */
+public class FileHasher {
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final int SMALL_FILE_SIZE = 1 << 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+
+    private class Context {
+        private final HashFunction[] functions;
+        private final ByteBuffer smallBuffer = ByteBuffer.allocate(SMALL_FILE_SIZE);
+        private ByteBuffer largeBuffer;
+
+        private Context() {
+            try {
+                functions = create(algorithms);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private ByteBuffer buffer(long size) {
+            if (size <= SMALL_FILE_SIZE) {
+                return smallBuffer;
+            }
+            if (largeBuffer == null) {
+                largeBuffer = ByteBuffer.allocateDirect(bufferSize);
+            }
+            return largeBuffer;
+        }
+    }
+
+    private final List<String> algorithms;
+    private final int bufferSize;
+    private final int[] digestLengths;
+    private final int digestLength;
+    private final ThreadLocal<Context> threadContext = ThreadLocal.withInitial(Context::new);
+    private final BlockingQueue<Context> sharedContexts;
+    private final WalkMetrics metrics;
+    private final long treeChunkSize;
+
+    public FileHasher() throws NoSuchAlgorithmException {
+        this(DEFAULT_BUFFER_SIZE, List.of(DEFAULT_ALGORITHM));
+    }
+
+    public FileHasher(int bufferSize, List<String> algorithms) throws NoSuchAlgorithmException {
+        this(bufferSize, algorithms, 0, null, 0);
+    }
+
+    /**
+     * Creates hasher, which reads at most {@code contexts} files at once, or uses per-thread buffers
+     * if {@code contexts} is zero. If {@code metrics} isn't {@code null}, every hashed file is recorded.
+     * If {@code treeChunkSize} is positive, files are hashed in tree mode.
+     */
+    public FileHasher(int bufferSize, List<String> algorithms, int contexts, WalkMetrics metrics,
+                      long treeChunkSize) throws NoSuchAlgorithmException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        if (algorithms.isEmpty()) {
+            throw new IllegalArgumentException("Expected at least one algorithm");
+        }
+        this.algorithms = List.copyOf(algorithms);
+        this.bufferSize = bufferSize;
+        this.metrics = metrics;
+        this.treeChunkSize = treeChunkSize;
+        HashFunction[] prototypes = create(this.algorithms);
+        digestLengths = Arrays.stream(prototypes).mapToInt(HashFunction::getDigestLength).toArray();
+        digestLength = Arrays.stream(digestLengths).sum();
+        if (contexts > 0) {
+            sharedContexts = new ArrayBlockingQueue<>(contexts);
+            for (int i = 0; i < contexts; i++) {
+                sharedContexts.add(new Context());
+            }
+        } else {
+            sharedContexts = null;
+        }
+    }
+
+    private static HashFunction[] create(List<String> algorithms) throws NoSuchAlgorithmException {
+        List<HashFunction> result = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            result.add(HashFunction.of(algorithm));
+        }
+        return result.toArray(HashFunction[]::new);
+    }
+
+    /**
+     * Returns comma-separated names of computed digests, prefixed by chunk size in tree mode.
+     */
+    public String getAlgorithm() {
+        String names = String.join(",", algorithms);
+        return treeChunkSize > 0 ? "tree-" + treeChunkSize + ":" + names : names;
+    }
+
+    /**
+     * Returns metrics, which record hashed files, or {@code null} if they are disabled.
+     */
+    public WalkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns total length of all digests.
+     */
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    /**
+     * Returns concatenation of all digests of {@code file}.
+     */
+    public byte[] hash(Path file) throws IOException {
+        if (sharedContexts == null) {
+            return hash(file, threadContext.get());
+        }
+        Context context;
+        try {
+            context = sharedContexts.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for buffer was interrupted");
+        }
+        try {
+            return hash(file, context);
+        } finally {
+            sharedContexts.add(context);
+        }
+    }
+
+    /**
+     * Returns concatenation of all digests of remaining bytes of {@code data}.
+     */
+    public byte[] hash(ByteBuffer data) {
+        if (sharedContexts == null) {
+            return hash(data, threadContext.get());
+        }
+        Context context;
+        try {
+            context = sharedContexts.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Waiting for hash functions was interrupted", e);
+        }
+        try {
+            return hash(data, context);
+        } finally {
+            sharedContexts.add(context);
+        }
+    }
+
+    private byte[] hash(ByteBuffer data, Context context) {
+        for (HashFunction function : context.functions) {
+            function.reset();
+            function.update(data.duplicate());
+        }
+        return digest(context.functions);
+    }
+
+    private byte[] digest(HashFunction[] hashFunctions) {
+        byte[] result = new byte[digestLength];
+        int offset = 0;
+        for (HashFunction function : hashFunctions) {
+            byte[] digest = function.digest();
+            System.arraycopy(digest, 0, result, offset, digest.length);
+            offset += digest.length;
+        }
+        return result;
+    }
+
+    private byte[] hash(Path file, Context context) throws IOException {
+        HashFunction[] hashFunctions = context.functions;
+        long start = metrics != null ? System.nanoTime() : 0;
+        long size = 0;
+        byte[] result;
+        try (FileChannel channel = FileChannel.open(file)) {
+            long fileSize = channel.size();
+            if (treeChunkSize > 0 && fileSize > treeChunkSize) {
+                result = treeHash(channel, fileSize);
+                size = fileSize;
+            } else {
+                reset(hashFunctions, treeChunkSize > 0 ? LEAF : -1);
+                ByteBuffer buffer = context.buffer(fileSize);
+                buffer.clear();
+                int read;
+                while ((read = channel.read(buffer)) >= 0) {
+                    size += read;
+                    update(hashFunctions, buffer);
+                }
+                result = digest(hashFunctions);
+            }
+        } catch (IOException e) {
+            if (metrics != null) {
+                metrics.failed();
+            }
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.hashed(file, size, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Resets functions and feeds them with {@code prefix} byte, unless it's negative.
+     */
+    private static void reset(HashFunction[] hashFunctions, int prefix) {
+        for (HashFunction function : hashFunctions) {
+            function.reset();
+            if (prefix >= 0) {
+                function.update(ByteBuffer.wrap(new byte[]{(byte) prefix}));
+            }
+        }
+    }
+
+    /**
+     * Feeds functions with content of the filled {@code buffer} and clears it.
+     */
+    private static void update(HashFunction[] hashFunctions, ByteBuffer buffer) {
+        buffer.flip();
+        for (HashFunction function : hashFunctions) {
+            buffer.rewind();
+            function.update(buffer);
+        }
+        buffer.clear();
+    }
+
+    private byte[] treeHash(FileChannel channel, long size) throws IOException {
+        long chunks = (size + treeChunkSize - 1) / treeChunkSize;
+        try {
+            return ForkJoinPool.commonPool().invoke(new TreeTask(channel, size, 0, chunks));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("serial") // tasks aren't serialized, and FileChannel isn't serializable
+    private class TreeTask extends RecursiveTask<byte[]> {
+        private final FileChannel channel;
+        private final long size;
+        private final long from;
+        private final long to;
+
+        private TreeTask(FileChannel channel, long size, long from, long to) {
+            this.channel = channel;
+            this.size = size;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (to - from == 1) {
+                try {
+                    return leaf();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = from + (to - from + 1) / 2;
+            TreeTask left = new TreeTask(channel, size, from, middle);
+            left.fork();
+            byte[] right = new TreeTask(channel, size, middle, to).compute();
+            return node(left.join(), right);
+        }
+
+        private byte[] leaf() throws IOException {
+            Context context = threadContext.get();
+            reset(context.functions, LEAF);
+            ByteBuffer buffer = context.buffer(treeChunkSize);
+            long position = from * treeChunkSize;
+            long end = Math.min(position + treeChunkSize, size);
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+                update(context.functions, buffer);
+            }
+            return digest(context.functions);
+        }
+
+        private byte[] node(byte[] left, byte[] right) {
+            HashFunction[] hashFunctions = threadContext.get().functions;
+            reset(hashFunctions, NODE);
+            int offset = 0;
+            for (int i = 0; i < hashFunctions.length; i++) {
+                hashFunctions[i].update(ByteBuffer.wrap(left, offset, digestLengths[i]));
+                hashFunctions[i].update(ByteBuffer.wrap(right, offset, digestLengths[i]));
+                offset += digestLengths[i];
+            }
+            return digest(hashFunctions);
+        }
+    }
+
+    /**
+     * Returns length of {@link #toHex} result.
+     */
+    public int getHexLength() {
+        return (digestLength << 1) + digestLengths.length - 1;
+    }
+
+    /**
+     * Writes result of {@link #hash} to {@code dest} as hex columns separated by spaces.
+     *
+     * @return number of written chars, which is {@link #getHexLength()}
+     */
+    public int formatHex(byte[] hash, char[] dest) {
+        int position = 0;
+        int offset = 0;
+        for (int length : digestLengths) {
+            if (offset > 0) {
+                dest[position++] = ' ';
+            }
+            for (int end = offset + length; offset < end; offset++) {
+                dest[position++] = HEX_DIGITS[(hash[offset] >> 4) & 0xF];
+                dest[position++] = HEX_DIGITS[hash[offset] & 0xF];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Converts result of {@link #hash} to hex columns separated by spaces.
+     */
+    public String toHex(byte[] hash) {
+        char[] chars = new char[getHexLength()];
+        return new String(chars, 0, formatHex(hash, chars));
+    }
+}
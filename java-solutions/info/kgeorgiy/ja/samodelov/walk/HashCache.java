@@ -0,0 +1,183 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent cache of file hashes keyed on path, size, modification time and file key (inode).
+ * Only entries looked up or stored during the run are saved, so unvisited files are pruned.
+ */
+public class HashCache {
+    private static final int MAGIC = 0x57414C4B;
+    private static final int VERSION = 1;
+    /**
+     * Bound of stored strings, which are paths and file keys, so lengths read from a corrupted cache
+     * don't make it allocate arbitrary arrays.
+     */
+    private static final int MAX_STRING_BYTES = 1 << 17;
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final byte[] hash;
+
+        private Entry(long size, long modified, String fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        private Entry(BasicFileAttributes attrs, byte[] hash) {
+            this(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), Objects.toString(attrs.fileKey(), ""), hash);
+        }
+
+        private boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && modified == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && fileKey.equals(Objects.toString(attrs.fileKey(), ""));
+        }
+    }
+
+    private final Path path;
+    private final String algorithm;
+    private final Map<String, Entry> previous = new ConcurrentHashMap<>();
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private HashCache(Path path, String algorithm) {
+        this.path = path;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Loads cache from {@code path}. Missing, corrupted or built for another algorithm cache is treated as empty.
+     */
+    public static HashCache load(Path path, String algorithm) {
+        HashCache cache = new HashCache(path, algorithm);
+        if (Files.notExists(path)) {
+            return cache;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long limit = Math.min(Files.size(path), MAX_STRING_BYTES);
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || !algorithm.equals(readString(input, limit))) {
+                System.err.println("Hash cache has unexpected format and will be rebuilt");
+                return cache;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String file = readString(input, limit);
+                long size = input.readLong();
+                long modified = input.readLong();
+                String fileKey = readString(input, limit);
+                byte[] hash = new byte[input.readUnsignedShort()];
+                input.readFully(hash);
+                cache.previous.put(file, new Entry(size, modified, fileKey, hash));
+            }
+        } catch (IOException e) {
+            System.err.println("Hash cache wasn't read and will be rebuilt: " + e.getMessage());
+            cache.previous.clear();
+        }
+        return cache;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Returns cached hash of {@code file} if its attributes are unchanged, otherwise {@code null}.
+     */
+    public byte[] get(Path file, BasicFileAttributes attrs) {
+        String key = key(file);
+        Entry entry = previous.get(key);
+        if (entry != null && entry.matches(attrs)) {
+            current.put(key, entry);
+            hits.increment();
+            return entry.hash;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Keeps cached hash of visited {@code file} if its attributes are unchanged, without counting a lookup.
+     */
+    public void retain(Path file, BasicFileAttributes attrs) {
+        String key = key(file);
+        Entry entry = previous.get(key);
+        if (entry != null && entry.matches(attrs)) {
+            current.putIfAbsent(key, entry);
+        }
+    }
+
+    public void put(Path file, BasicFileAttributes attrs, byte[] hash) {
+        current.put(key(file), new Entry(attrs, hash));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPruned() {
+        return previous.keySet().stream().filter(key -> !current.containsKey(key)).count();
+    }
+
+    /**
+     * Atomically replaces cache file with entries visited during this run.
+     */
+    public void save() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, algorithm);
+                output.writeInt(current.size());
+                for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                    writeString(output, entry.getKey());
+                    output.writeLong(entry.getValue().size);
+                    output.writeLong(entry.getValue().modified);
+                    writeString(output, entry.getValue().fileKey);
+                    output.writeShort(entry.getValue().hash.length);
+                    output.write(entry.getValue().hash);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String readString(DataInputStream input, long limit) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
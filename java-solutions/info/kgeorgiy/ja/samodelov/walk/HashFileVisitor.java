@@ -3,64 +3,250 @@ package info.kgeorgiy.ja.samodelov.walk;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.math.BigInteger;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 public class HashFileVisitor implements FileVisitor<Path> {
+    private static final int PENDING_PER_THREAD = 256;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    /**
+     * First byte of directory digest input, so a directory never hashes the same as a file with equal bytes.
+     */
+    private static final byte DIRECTORY_TAG = 'D';
+
+    /**
+     * Children of a directory, which is being visited in Merkle mode.
+     */
+    private static class DirectoryState {
+        private final List<String> names = new ArrayList<>();
+        private final List<CompletableFuture<byte[]>> hashes = new ArrayList<>();
+    }
 
     private final BufferedWriter writer;
-    private final byte[] buffer = new byte[4096];
+    private final FileHasher hasher;
+    private final ExecutorService executor;
+    private final HashCache cache;
+    private final int pendingLimit;
+    private final Deque<String> pendingFiles = new ArrayDeque<>();
+    private final Deque<CompletableFuture<byte[]>> pendingHashes = new ArrayDeque<>();
+    private final char[] hexBuffer;
+    private final boolean merkle;
+    private final Deque<DirectoryState> directories = new ArrayDeque<>();
     public final String exceptionHash;
-    private final MessageDigest md = MessageDigest.getInstance("SHA-256");
 
     public HashFileVisitor(BufferedWriter writer) throws NoSuchAlgorithmException {
+        this(writer, new FileHasher(), null, 1, null, false);
+    }
+
+    /**
+     * Creates visitor, which hashes files on {@code executor} and writes results in visiting order.
+     * If {@code executor} is {@code null}, files are hashed on the calling thread.
+     * If {@code cache} isn't {@code null}, unchanged regular files aren't read.
+     * If {@code merkle} is {@code true}, every directory gets a line with digest of its sorted children
+     * names and hashes after lines of its content.
+     */
+    public HashFileVisitor(BufferedWriter writer, FileHasher hasher, ExecutorService executor, int threads,
+                           HashCache cache, boolean merkle) {
         this.writer = writer;
-        exceptionHash = "0".repeat(md.getDigestLength() << 1);
+        this.hasher = hasher;
+        this.executor = executor;
+        this.cache = cache;
+        this.merkle = merkle;
+        this.pendingLimit = Math.max(threads, 1) * PENDING_PER_THREAD;
+        this.hexBuffer = new char[hasher.getHexLength()];
+        exceptionHash = hasher.toHex(new byte[hasher.getDigestLength()]);
     }
 
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (merkle) {
+            directories.push(new DirectoryState());
+        }
         return FileVisitResult.CONTINUE;
     }
 
-    public void getHash(Path file) throws IOException {
-        String message = "";
-        try (InputStream inputStream = Files.newInputStream(file)) {
-            int size;
-            while ((size = inputStream.read(buffer)) >= 0) {
-                md.update(buffer, 0, size);
+    /**
+     * Returns hash of {@code file} or {@code null} if it can't be read.
+     */
+    private byte[] hash(Path file, BasicFileAttributes attrs) {
+        try {
+            byte[] hash = hasher.hash(file);
+            if (attrs != null) {
+                cache.put(file, attrs, hash);
             }
-            byte[] hash = md.digest();
-            message = String.format("%0" + (hash.length << 1) + "x", new BigInteger(1, hash));
+            return hash;
         } catch (IOException e) {
-            message = exceptionHash;
-        } finally {
-            write(message, file.toString());
+            return null;
+        }
+    }
+
+    public void getHash(Path file) throws IOException {
+        BasicFileAttributes attrs = null;
+        if (cache != null) {
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // file will be reported by hashing
+            }
+        }
+        hashFile(file, attrs);
+    }
+
+    private void hashFile(Path file, BasicFileAttributes attrs) throws IOException {
+        BasicFileAttributes cacheAttrs = cache != null && attrs != null && attrs.isRegularFile() ? attrs : null;
+        if (cacheAttrs != null) {
+            byte[] cached = cache.get(file, cacheAttrs);
+            if (cached != null) {
+                write(file, cached);
+                return;
+            }
+        }
+        if (executor == null) {
+            write(file, hash(file, cacheAttrs));
+        } else {
+            enqueue(file, CompletableFuture.supplyAsync(() -> hash(file, cacheAttrs), executor));
         }
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        getHash(file);
+        hashFile(file, attrs);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        write(exceptionHash, file.toString());
+        failed();
+        write(file, null);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (merkle) {
+            DirectoryState state = directories.pop();
+            if (exc != null) {
+                failed();
+                write(dir, null);
+            } else if (executor == null) {
+                write(dir, directoryHash(state.names, state.hashes.stream().map(CompletableFuture::join).toList()));
+            } else {
+                enqueue(dir, CompletableFuture.allOf(state.hashes.toArray(CompletableFuture[]::new))
+                        .thenApplyAsync(ignored -> directoryHash(state.names,
+                                state.hashes.stream().map(CompletableFuture::join).toList()), executor));
+            }
+        }
         return FileVisitResult.CONTINUE;
     }
 
-    public void write(String hash, String file) throws IOException {
-        writer.write(String.format("%s %s" + System.lineSeparator(), hash, file));
+    /**
+     * Returns digest of {@link #DIRECTORY_TAG} and children sorted by name, where each child is written as
+     * UTF-8 name, zero byte and hash, which is all zeros for unreadable children.
+     */
+    private byte[] directoryHash(List<String> names, List<byte[]> hashes) {
+        Integer[] order = new Integer[names.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(names::get));
+        byte[] zeros = new byte[hasher.getDigestLength()];
+        byte[][] encodedNames = new byte[names.size()][];
+        int size = 1;
+        for (int i = 0; i < names.size(); i++) {
+            encodedNames[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            size += encodedNames[i].length + 1 + zeros.length;
+        }
+        ByteBuffer data = ByteBuffer.allocate(size).put(DIRECTORY_TAG);
+        for (int i : order) {
+            data.put(encodedNames[i]).put((byte) 0).put(hashes.get(i) == null ? zeros : hashes.get(i));
+        }
+        return hasher.hash(data.flip());
+    }
+
+    private void failed() {
+        if (hasher.getMetrics() != null) {
+            hasher.getMetrics().failed();
+        }
+    }
+
+    /**
+     * Writes line with {@link #exceptionHash} for {@code file}.
+     */
+    public void writeError(String file) throws IOException {
+        failed();
+        if (executor == null || pendingHashes.isEmpty()) {
+            writeLine(file, null);
+        } else {
+            enqueue(file, CompletableFuture.completedFuture(null));
+        }
+    }
+
+    private void write(Path file, byte[] hash) throws IOException {
+        if (executor == null || pendingHashes.isEmpty()) {
+            addToDirectory(file, CompletableFuture.completedFuture(hash));
+            writeLine(file.toString(), hash);
+        } else {
+            enqueue(file, CompletableFuture.completedFuture(hash));
+        }
+    }
+
+    private void addToDirectory(Path file, CompletableFuture<byte[]> hash) {
+        if (!directories.isEmpty() && file.getFileName() != null) {
+            DirectoryState state = directories.peek();
+            state.names.add(file.getFileName().toString());
+            state.hashes.add(hash);
+        }
+    }
+
+    private void writeLine(String file, byte[] hash) throws IOException {
+        if (hash == null) {
+            writer.write(exceptionHash);
+        } else {
+            writer.write(hexBuffer, 0, hasher.formatHex(hash, hexBuffer));
+        }
+        writer.write(' ');
+        writer.write(file);
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private void enqueue(Path file, CompletableFuture<byte[]> hash) throws IOException {
+        addToDirectory(file, hash);
+        enqueue(file.toString(), hash);
+    }
+
+    private void enqueue(String file, CompletableFuture<byte[]> hash) throws IOException {
+        pendingFiles.add(file);
+        pendingHashes.add(hash);
+        while (pendingHashes.size() > pendingLimit) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            byte[] hash = pendingHashes.peek().get();
+            pendingHashes.poll();
+            writeLine(pendingFiles.poll(), hash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for hash was interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Hashing was failed", e.getCause());
+        }
+    }
+
+    /**
+     * Waits for all submitted files and writes their lines.
+     */
+    public void finish() throws IOException {
+        while (!pendingHashes.isEmpty()) {
+            writeNext();
+        }
     }
 }
@@ -0,0 +1,99 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming hash function, which is fed with file content chunk by chunk.
+ * Instances aren't thread-safe.
+ */
+public interface HashFunction {
+    void update(ByteBuffer buffer);
+
+    /**
+     * Returns hash of all bytes passed since last reset and resets function.
+     */
+    byte[] digest();
+
+    void reset();
+
+    int getDigestLength();
+
+    /**
+     * Creates hash function by name: {@code CRC32}, {@code CRC32C}, {@code XXH64}
+     * or any algorithm supported by {@link MessageDigest}.
+     */
+    static HashFunction of(String algorithm) throws NoSuchAlgorithmException {
+        return switch (algorithm.toUpperCase()) {
+            case "CRC32" -> new ChecksumFunction(new CRC32());
+            case "CRC32C" -> new ChecksumFunction(new CRC32C());
+            case "XXH64" -> new XxHash64();
+            default -> new MessageDigestFunction(MessageDigest.getInstance(algorithm));
+        };
+    }
+
+    class MessageDigestFunction implements HashFunction {
+        private final MessageDigest md;
+
+        public MessageDigestFunction(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            md.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return md.digest();
+        }
+
+        @Override
+        public void reset() {
+            md.reset();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return md.getDigestLength();
+        }
+    }
+
+    /**
+     * 32-bit {@link Checksum}, written in big-endian order.
+     */
+    class ChecksumFunction implements HashFunction {
+        private final Checksum checksum;
+
+        public ChecksumFunction(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            checksum.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            byte[] result = ByteBuffer.allocate(Integer.BYTES).putInt((int) checksum.getValue()).array();
+            checksum.reset();
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return Integer.BYTES;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Compares two outputs of {@code RecursiveWalk --merkle}, which were written with the same algorithms.
+ * Subtrees with equal directory digests are skipped without looking at their content.
+ * Writes {@code A path}, {@code D path} and {@code M path} lines for added, deleted and modified entries.
+ */
+public class MerkleDiff {
+    public static final String USAGE = "old.out new.out [--algorithm name[,name...]]";
+
+    private static class Tree {
+        private final Map<String, String> hashes = new HashMap<>();
+        private final Map<String, SortedSet<String>> children = new HashMap<>();
+        private final SortedSet<String> roots = new TreeSet<>();
+
+        /**
+         * Reads lines of {@code file}, which start with {@code width} chars of hex digests.
+         */
+        private Tree(Path file, int width) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                int skipped = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > width + 1 && line.charAt(width) == ' ') {
+                        hashes.put(line.substring(width + 1), line.substring(0, width));
+                    } else {
+                        skipped++;
+                    }
+                }
+                if (skipped > 0) {
+                    System.err.printf("%d lines of %s don't start with digests of the given algorithms%n", skipped, file);
+                }
+            }
+            for (String path : hashes.keySet()) {
+                String parent = parent(path);
+                if (parent != null && hashes.containsKey(parent)) {
+                    children.computeIfAbsent(parent, p -> new TreeSet<>()).add(path);
+                } else {
+                    roots.add(path);
+                }
+            }
+        }
+        private static String parent(String path) {
+            try {
+                Path parent = Paths.get(path).getParent();
+                return parent == null ? null : parent.toString();
+            } catch (InvalidPathException e) {
+                return null;
+            }
+        }
+
+        private SortedSet<String> children(String path) {
+            return children.getOrDefault(path, Collections.emptySortedSet());
+        }
+    }
+
+    private final Tree before;
+    private final Tree after;
+    private final PrintStream out;
+    private int compared;
+
+    private MerkleDiff(Tree before, Tree after, PrintStream out) {
+        this.before = before;
+        this.after = after;
+        this.out = out;
+    }
+
+    /**
+     * Compares entries in sorted order, descending into modified directories.
+     */
+    private void compare(SortedSet<String> roots) {
+        Deque<String> stack = new ArrayDeque<>();
+        roots.reversed().forEach(stack::push);
+        while (!stack.isEmpty()) {
+            String path = stack.pop();
+            compared++;
+            String oldHash = before.hashes.get(path);
+            String newHash = after.hashes.get(path);
+            if (oldHash == null) {
+                out.println("A " + path);
+            } else if (newHash == null) {
+                out.println("D " + path);
+            } else if (!oldHash.equals(newHash)) {
+                out.println("M " + path);
+                SortedSet<String> children = new TreeSet<>(before.children(path));
+                children.addAll(after.children(path));
+                children.reversed().forEach(stack::push);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args == null || (args.length != 2 && args.length != 4) || Arrays.stream(args).anyMatch(Objects::isNull)
+                || args.length == 4 && !args[2].equals("--algorithm")) {
+            System.err.println("Incorrect format of arguments. Expected \"" + USAGE + "\"");
+            return;
+        }
+        List<String> algorithms = args.length == 4 ? List.of(args[3].split(",")) : List.of(FileHasher.DEFAULT_ALGORITHM);
+        Tree before;
+        Tree after;
+        try {
+            int width = new FileHasher(FileHasher.DEFAULT_BUFFER_SIZE, algorithms).getHexLength();
+            before = new Tree(Paths.get(args[0]), width);
+            after = new Tree(Paths.get(args[1]), width);
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Unknown algorithm: " + e.getMessage());
+            return;
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Walk outputs weren't read: " + e.getMessage());
+            return;
+        }
+        MerkleDiff diff = new MerkleDiff(before, after, System.out);
+        SortedSet<String> roots = new TreeSet<>(before.roots);
+        roots.addAll(after.roots);
+        diff.compare(roots);
+        System.err.printf("Compared %d of %d entries%n", diff.compared,
+                Math.max(before.hashes.size(), after.hashes.size()));
+    }
+}
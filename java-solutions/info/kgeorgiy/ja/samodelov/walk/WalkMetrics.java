@@ -0,0 +1,169 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import info.kgeorgiy.ja.samodelov.metrics.Jmx;
+import info.kgeorgiy.ja.samodelov.metrics.LogHistogram;
+
+import javax.management.ObjectName;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters of a walk: hashed files and bytes, failures, latency histogram and slowest files.
+ * Walker code holds {@code null} instead of metrics when they are disabled.
+ */
+public class WalkMetrics implements WalkMetricsMBean {
+    public static final String OBJECT_NAME = "info.kgeorgiy.ja.samodelov.walk:type=WalkMetrics";
+    private static final int SLOWEST = 10;
+    private static final double MEGABYTE = 1 << 20;
+
+    private static class Slow {
+        private final String file;
+        private final long nanos;
+
+        private Slow(String file, long nanos) {
+            this.file = file;
+            this.nanos = nanos;
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LogHistogram histogram = new LogHistogram();
+    private final PriorityQueue<Slow> slowest = new PriorityQueue<>(Comparator.comparingLong(slow -> slow.nanos));
+    private volatile long slowThreshold = -1;
+    private ObjectName name;
+
+    public void hashed(Path file, long size, long nanos) {
+        files.increment();
+        bytes.add(size);
+        histogram.record(nanos);
+        if (nanos > slowThreshold) {
+            synchronized (slowest) {
+                slowest.add(new Slow(file.toString(), nanos));
+                if (slowest.size() > SLOWEST) {
+                    slowest.poll();
+                }
+                if (slowest.size() == SLOWEST) {
+                    slowThreshold = slowest.peek().nanos;
+                }
+            }
+        }
+    }
+
+    public void failed() {
+        failures.increment();
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / seconds();
+    }
+
+    @Override
+    public double getMegabytesPerSecond() {
+        return getBytes() / MEGABYTE / seconds();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        return histogram.toArray();
+    }
+
+    private Slow[] slowest() {
+        synchronized (slowest) {
+            return slowest.stream().sorted(Comparator.comparingLong((Slow slow) -> slow.nanos).reversed()).toArray(Slow[]::new);
+        }
+    }
+
+    @Override
+    public String[] getSlowestFiles() {
+        Slow[] slow = slowest();
+        String[] result = new String[slow.length];
+        for (int i = 0; i < slow.length; i++) {
+            result[i] = String.format("%d us %s", slow[i].nanos / 1000, slow[i].file);
+        }
+        return result;
+    }
+
+    public String toText() {
+        long[] buckets = getLatencyHistogram();
+        return String.format("Walk: %d files (%.1f/s), %.1f MB (%.1f MB/s), %d failures, " +
+                        "latency p50 <= %d us, p99 <= %d us",
+                getFiles(), getFilesPerSecond(), getBytes() / MEGABYTE, getMegabytesPerSecond(), getFailures(),
+                LogHistogram.quantile(buckets, 0.5) / 1000, LogHistogram.quantile(buckets, 0.99) / 1000);
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"files\": %d, \"bytes\": %d, \"failures\": %d, " +
+                        "\"filesPerSecond\": %.3f, \"megabytesPerSecond\": %.3f, \"latencyHistogramNanos\": {",
+                getFiles(), getBytes(), getFailures(), getFilesPerSecond(), getMegabytesPerSecond()));
+        long[] buckets = getLatencyHistogram();
+        boolean first = true;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != 0) {
+                sb.append(first ? "" : ", ").append('"').append(i == 0 ? 0 : Long.toUnsignedString(1L << i)).append("\": ").append(buckets[i]);
+                first = false;
+            }
+        }
+        sb.append("}, \"slowest\": [");
+        Slow[] slow = slowest();
+        for (int i = 0; i < slow.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append("{\"file\": ");
+            appendJsonString(sb, slow[i].file);
+            sb.append(", \"nanos\": ").append(slow[i].nanos).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendJsonString(StringBuilder sb, String string) {
+        sb.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                default -> {
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    public void register() {
+        name = Jmx.register(this, OBJECT_NAME);
+    }
+
+    public void unregister() {
+        Jmx.unregister(name);
+    }
+}
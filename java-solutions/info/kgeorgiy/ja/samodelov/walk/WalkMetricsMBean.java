@@ -0,0 +1,25 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import info.kgeorgiy.ja.samodelov.metrics.LogHistogram;
+
+/**
+ * JMX view of {@link WalkMetrics}.
+ */
+public interface WalkMetricsMBean {
+    long getFiles();
+
+    long getBytes();
+
+    long getFailures();
+
+    double getFilesPerSecond();
+
+    double getMegabytesPerSecond();
+
+    /**
+     * Returns number of files by hashing latency in buckets of {@link LogHistogram}.
+     */
+    long[] getLatencyHistogram();
+
+    String[] getSlowestFiles();
+}
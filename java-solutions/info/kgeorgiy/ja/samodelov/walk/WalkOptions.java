@@ -0,0 +1,85 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.util.List;
+
+/**
+ * Command line options of {@link Walker}: {@code file.in file.out [threads] [--option value]...}
+ * <p>
+ * With {@code --async depth} every file is read on its own virtual thread, at most {@code depth} files at once,
+ * and {@code threads} is ignored.
+ * <p>
+ * With {@code --metrics seconds} progress is reported to stderr, or to {@code --metrics-file} as JSON,
+ * with the given period and is exposed through JMX.
+ * <p>
+ * With {@code --merkle} recursive walk also writes digest of every directory, see {@link MerkleDiff}.
+ * <p>
+ * With {@code --tree-hash chunk} large files are hashed by chunks in parallel, and all digests
+ * are tree digests described in {@link FileHasher}, which differ from flat ones. Chunk buffers aren't limited
+ * by {@code --async}, see {@link FileHasher} for their bound.
+ */
+public class WalkOptions {
+    public static final String USAGE = "file.in file.out [threads] [--buffer size] [--cache file] "
+            + "[--algorithm name[,name...]] [--async depth] [--metrics seconds] [--metrics-file file.json] [--merkle] "
+            + "[--tree-hash chunk]";
+
+    String input;
+    String output;
+    int threads = 1;
+    int bufferSize = FileHasher.DEFAULT_BUFFER_SIZE;
+    String cacheFile;
+    List<String> algorithms = List.of(FileHasher.DEFAULT_ALGORITHM);
+    int asyncDepth;
+    int metricsInterval;
+    String metricsFile;
+    boolean merkle;
+    int treeChunkSize;
+
+    public static WalkOptions parse(String[] args) {
+        if (args == null || args.length < 2 || args[0] == null || args[1] == null) {
+            throw new IllegalArgumentException("Expected input and output files");
+        }
+        WalkOptions options = new WalkOptions();
+        options.input = args[0];
+        options.output = args[1];
+        int i = 2;
+        if (i < args.length && args[i] != null && !args[i].startsWith("--")) {
+            options.threads = parsePositive(args[i++], "threads");
+        }
+        while (i < args.length) {
+            String option = args[i++];
+            if (option == null) {
+                throw new IllegalArgumentException("Expected option");
+            }
+            switch (option) {
+                case "--buffer" -> options.bufferSize = parsePositive(value(args, i++, option), "buffer size");
+                case "--cache" -> options.cacheFile = value(args, i++, option);
+                case "--algorithm" -> options.algorithms = List.of(value(args, i++, option).split(","));
+                case "--async" -> options.asyncDepth = parsePositive(value(args, i++, option), "async depth");
+                case "--metrics" -> options.metricsInterval = parsePositive(value(args, i++, option), "metrics interval");
+                case "--metrics-file" -> options.metricsFile = value(args, i++, option);
+                case "--merkle" -> options.merkle = true;
+                case "--tree-hash" -> options.treeChunkSize = parsePositive(value(args, i++, option), "tree chunk size");
+                default -> throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("Expected value of option " + option);
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(String value, String name) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Incorrect " + name + ": " + value);
+    }
+}
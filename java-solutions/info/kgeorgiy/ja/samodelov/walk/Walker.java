@@ -1,62 +1,173 @@
 package info.kgeorgiy.ja.samodelov.walk;
 
 import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Walker {
     public static final String DEFAULT = "DEFAULT";
     public static final String RECURSIVE = "RECURSIVE";
+    public static final String DUPLICATES = "DUPLICATES";
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    private static final int DEFAULT_METRICS_INTERVAL = 10;
+
     protected static void walk(String inputString, String outputString, String walkerType) throws Exception {
+        walk(WalkOptions.parse(new String[]{inputString, outputString}), walkerType);
+    }
+
+    protected static void walk(WalkOptions options, String walkerType) throws Exception {
         Path inputPath;
         Path outputPath;
+        Path cachePath;
+        int threads = options.asyncDepth > 0 ? options.asyncDepth : options.threads;
         try {
-            inputPath = Paths.get(inputString);
-            outputPath = Paths.get(outputString);
+            inputPath = Paths.get(options.input);
+            outputPath = Paths.get(options.output);
+            cachePath = options.cacheFile != null ? Paths.get(options.cacheFile) : null;
             if (outputPath.getParent() != null && Files.notExists(outputPath.getParent())) {
                 Files.createDirectories(outputPath.getParent());
             }
         } catch(InvalidPathException e) {
-            System.err.println("Invalid path string of input or output");
+            System.err.println("Invalid path string of input, output or cache");
             return;
         }
 
-        try (BufferedReader input = Files.newBufferedReader(inputPath)) {
-            try (BufferedWriter output = Files.newBufferedWriter(outputPath)) {
-                HashFileVisitor visitor = new HashFileVisitor(output);
-                String pathString;
-                while ((pathString = input.readLine()) != null) {
-                    try {
-                        Path path = Paths.get(pathString);
-                        switch (walkerType){
-                            case DEFAULT -> visitor.getHash(path);
-                            case RECURSIVE -> Files.walkFileTree(path, visitor);
-                            default -> System.err.println("Unexpected walk type");
-                        }
-                    } catch (InvalidPathException | IOException e) {
-                        visitor.write(visitor.exceptionHash, pathString);
-                    }
+        WalkMetrics metrics = options.metricsInterval > 0 || options.metricsFile != null ? new WalkMetrics() : null;
+        FileHasher hasher = new FileHasher(options.bufferSize, options.algorithms, options.asyncDepth, metrics,
+                options.treeChunkSize);
+        if (options.treeChunkSize > 0) {
+            System.err.println("Tree hash mode: digests are " + hasher.getAlgorithm()
+                    + " tree roots and differ from flat file digests");
+        }
+        HashCache cache = cachePath != null ? HashCache.load(cachePath, hasher.getAlgorithm()) : null;
+        ScheduledExecutorService reporter = metrics != null ? startReporting(metrics, options) : null;
+        try (ExecutorService executor = createExecutor(options);
+             BufferedReader input = Files.newBufferedReader(inputPath)) {
+            try (BufferedWriter output = newOutput(outputPath)) {
+                if (DUPLICATES.equals(walkerType)) {
+                    DuplicateFinder finder = new DuplicateFinder(hasher, executor, cache);
+                    finder.find(input, output);
+                    System.err.println(finder.getReport());
+                } else {
+                    HashFileVisitor visitor = new HashFileVisitor(output, hasher, executor, threads, cache, options.merkle);
+                    hashAll(input, visitor, walkerType);
+                    visitor.finish();
                 }
             } catch (IOException e) {
                 System.err.println("Output file wasn't open");
+                return;
+            }
+            if (cache != null) {
+                saveCache(cache);
             }
         } catch (IOException e) {
             System.err.println("Input file wasn't open");
+        } finally {
+            if (reporter != null) {
+                stopReporting(reporter, metrics, options);
+            }
         }
+    }
+
+    private static ScheduledExecutorService startReporting(WalkMetrics metrics, WalkOptions options) {
+        metrics.register();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int interval = options.metricsInterval > 0 ? options.metricsInterval : DEFAULT_METRICS_INTERVAL;
+        reporter.scheduleAtFixedRate(() -> report(metrics, options), interval, interval, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    private static void stopReporting(ScheduledExecutorService reporter, WalkMetrics metrics, WalkOptions options) {
+        reporter.shutdownNow();
+        report(metrics, options);
+        metrics.unregister();
+    }
 
+    private static void report(WalkMetrics metrics, WalkOptions options) {
+        if (options.metricsFile == null) {
+            System.err.println(metrics.toText());
+            return;
+        }
+        try {
+            Path path = Paths.get(options.metricsFile).toAbsolutePath();
+            Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Files.writeString(temp, metrics.toJson());
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Metrics weren't written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns virtual thread per file executor in async mode, fixed pool for several threads
+     * or {@code null} for hashing on the calling thread.
+     */
+    private static ExecutorService createExecutor(WalkOptions options) {
+        if (options.asyncDepth > 0) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return options.threads > 1 ? Executors.newFixedThreadPool(options.threads) : null;
+    }
+
+    private static BufferedWriter newOutput(Path outputPath) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new BufferedOutputStream(Files.newOutputStream(outputPath), OUTPUT_BUFFER_SIZE),
+                StandardCharsets.UTF_8.newEncoder()), OUTPUT_BUFFER_SIZE);
+    }
+
+    private static void hashAll(BufferedReader input, HashFileVisitor visitor, String walkerType) throws IOException {
+        String pathString;
+        while ((pathString = input.readLine()) != null) {
+            try {
+                Path path = Paths.get(pathString);
+                switch (walkerType){
+                    case DEFAULT -> visitor.getHash(path);
+                    case RECURSIVE -> Files.walkFileTree(path, visitor);
+                    default -> System.err.println("Unexpected walk type");
+                }
+            } catch (InvalidPathException | IOException e) {
+                visitor.writeError(pathString);
+            }
+        }
+    }
+
+    private static void saveCache(HashCache cache) {
+        try {
+            cache.save();
+        } catch (IOException e) {
+            System.err.println("Hash cache wasn't saved: " + e.getMessage());
+        }
+        System.err.printf("Hash cache: %d hits, %d misses, %d pruned%n",
+                cache.getHits(), cache.getMisses(), cache.getPruned());
     }
 
     public static void invoke(String[] args, String walkerType) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.err.println("Incorrect format of arguments. Expected \"file.in file.out\"");
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Incorrect format of arguments: " + e.getMessage()
+                    + ". Expected \"" + WalkOptions.USAGE + "\"");
             return;
         }
         try {
-            walk(args[0], args[1], walkerType);
+            walk(options, walkerType);
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
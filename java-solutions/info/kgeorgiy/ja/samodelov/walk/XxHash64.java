@@ -0,0 +1,133 @@
+package info.kgeorgiy.ja.samodelov.walk;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java streaming xxHash64 with zero seed. Digest is written in big-endian order, as {@code xxh64sum} prints it.
+ */
+public final class XxHash64 implements HashFunction {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private static final VarHandle ARRAY_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle ARRAY_INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] memory = new byte[STRIPE];
+    private int memorySize;
+    private long total;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    public XxHash64() {
+        reset();
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        return (acc ^ round(0, value)) * P1 + P4;
+    }
+
+    private void stripe(long a, long b, long c, long d) {
+        v1 = round(v1, a);
+        v2 = round(v2, b);
+        v3 = round(v3, c);
+        v4 = round(v4, d);
+    }
+
+    private static long arrayLong(byte[] array, int index) {
+        return (long) ARRAY_LONG.get(array, index);
+    }
+
+    private static long bufferLong(ByteBuffer buffer, int index) {
+        return (long) BUFFER_LONG.get(buffer, index);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int remaining = buffer.remaining();
+        total += remaining;
+        if (memorySize + remaining < STRIPE) {
+            buffer.get(memory, memorySize, remaining);
+            memorySize += remaining;
+            return;
+        }
+        if (memorySize > 0) {
+            buffer.get(memory, memorySize, STRIPE - memorySize);
+            stripe(arrayLong(memory, 0), arrayLong(memory, 8), arrayLong(memory, 16), arrayLong(memory, 24));
+            memorySize = 0;
+        }
+        int position = buffer.position();
+        int limit = buffer.limit();
+        for (; position + STRIPE <= limit; position += STRIPE) {
+            stripe(bufferLong(buffer, position), bufferLong(buffer, position + 8),
+                    bufferLong(buffer, position + 16), bufferLong(buffer, position + 24));
+        }
+        buffer.position(position);
+        memorySize = buffer.remaining();
+        buffer.get(memory, 0, memorySize);
+    }
+
+    @Override
+    public byte[] digest() {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+
+        int i = 0;
+        for (; i + Long.BYTES <= memorySize; i += Long.BYTES) {
+            h = Long.rotateLeft(h ^ round(0, arrayLong(memory, i)), 27) * P1 + P4;
+        }
+        if (i + Integer.BYTES <= memorySize) {
+            h = Long.rotateLeft(h ^ (Integer.toUnsignedLong((int) ARRAY_INT.get(memory, i)) * P1), 23) * P2 + P3;
+            i += Integer.BYTES;
+        }
+        for (; i < memorySize; i++) {
+            h = Long.rotateLeft(h ^ ((memory[i] & 0xFF) * P5), 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+
+        reset();
+        return ByteBuffer.allocate(Long.BYTES).putLong(h).array();
+    }
+
+    @Override
+    public void reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        memorySize = 0;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return Long.BYTES;
+    }
+}
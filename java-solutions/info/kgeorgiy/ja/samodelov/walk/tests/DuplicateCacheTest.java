@@ -0,0 +1,64 @@
+package info.kgeorgiy.ja.samodelov.walk.tests;
+
+import info.kgeorgiy.ja.samodelov.walk.DuplicateWalk;
+import info.kgeorgiy.ja.samodelov.walk.FileHasher;
+import info.kgeorgiy.ja.samodelov.walk.HashCache;
+import info.kgeorgiy.ja.samodelov.walk.RecursiveWalk;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+public class DuplicateCacheTest extends Assert {
+    private static List<Path> createFiles(Path root) throws IOException {
+        return List.of(
+                Files.writeString(root.resolve("first"), "duplicate"),
+                Files.writeString(root.resolve("second"), "duplicate"),
+                Files.writeString(root.resolve("unique"), "unique content")
+        );
+    }
+
+    private static void assertCached(Path cachePath, List<Path> files) throws IOException, NoSuchAlgorithmException {
+        HashCache cache = HashCache.load(cachePath, new FileHasher().getAlgorithm());
+        for (Path file : files) {
+            assertNotNull("No cached hash of " + file,
+                    cache.get(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+    }
+
+    private static String[] args(Path root, String output, Path cache) throws IOException {
+        Path input = Files.writeString(root.resolve("input.txt"), root.resolve("files").toString());
+        return new String[]{input.toString(), root.resolve(output).toString(), "--cache", cache.toString()};
+    }
+
+    @Test
+    public void testDuplicateWalkKeepsCache() throws IOException, NoSuchAlgorithmException {
+        Path root = Files.createTempDirectory("duplicates");
+        List<Path> files = createFiles(Files.createDirectory(root.resolve("files")));
+        Path cache = root.resolve("hashes.cache");
+
+        RecursiveWalk.main(args(root, "walk.txt", cache));
+        assertCached(cache, files);
+        long size = Files.size(cache);
+
+        DuplicateWalk.main(args(root, "duplicates.txt", cache));
+        assertCached(cache, files);
+        assertEquals(size, Files.size(cache));
+        assertEquals(2, Files.readAllLines(root.resolve("duplicates.txt")).size());
+    }
+
+    @Test
+    public void testDuplicateWalkFillsCache() throws IOException, NoSuchAlgorithmException {
+        Path root = Files.createTempDirectory("duplicates");
+        List<Path> files = createFiles(Files.createDirectory(root.resolve("files")));
+        Path cache = root.resolve("hashes.cache");
+
+        DuplicateWalk.main(args(root, "duplicates.txt", cache));
+        assertCached(cache, files.subList(0, 2));
+    }
+}
@@ -0,0 +1,43 @@
+package info.kgeorgiy.ja.samodelov.walk.tests;
+
+import info.kgeorgiy.ja.samodelov.walk.FileHasher;
+import info.kgeorgiy.ja.samodelov.walk.HashFileVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MerkleTest extends Assert {
+    private static Map<String, String> walk(Path root) throws IOException, NoSuchAlgorithmException {
+        StringWriter output = new StringWriter();
+        try (BufferedWriter writer = new BufferedWriter(output)) {
+            HashFileVisitor visitor = new HashFileVisitor(writer, new FileHasher(), null, 1, null, true);
+            Files.walkFileTree(root, visitor);
+            visitor.finish();
+        }
+        Map<String, String> hashes = new HashMap<>();
+        for (String line : output.toString().split(System.lineSeparator())) {
+            int space = line.indexOf(' ');
+            hashes.put(root.relativize(Path.of(line.substring(space + 1))).toString(), line.substring(0, space));
+        }
+        return hashes;
+    }
+
+    @Test
+    public void testEmptyDirectoryDiffersFromEmptyFile() throws IOException, NoSuchAlgorithmException {
+        Path root = Files.createTempDirectory("merkle");
+        Files.createDirectory(root.resolve("directory"));
+        Files.createFile(root.resolve("file"));
+        Map<String, String> hashes = walk(root);
+        assertNotNull(hashes.get("directory"));
+        assertNotNull(hashes.get("file"));
+        assertNotEquals(hashes.get("directory"), hashes.get("file"));
+    }
+}
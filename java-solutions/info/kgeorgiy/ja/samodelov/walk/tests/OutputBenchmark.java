@@ -0,0 +1,90 @@
+package info.kgeorgiy.ja.samodelov.walk.tests;
+
+import info.kgeorgiy.ja.samodelov.walk.FileHasher;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Compares writing of {@code hash path} lines as {@link info.kgeorgiy.ja.samodelov.walk.Walker} does,
+ * with {@link FileHasher#formatHex} into a reused buffer and 1 MiB buffered output, with the former writer,
+ * which formatted every hash through {@link BigInteger} and every line through {@link String#format}.
+ * Lines are written to a null stream, so only formatting and encoding are measured.
+ * <p>
+ * Usage: {@code OutputBenchmark [lines]}
+ */
+public class OutputBenchmark {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    private static final int ROUNDS = 5;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private interface LineWriter {
+        void write(Writer writer, byte[] hash, String file) throws IOException;
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static void measure(String name, Writer writer, LineWriter lines, byte[][] hashes, String[] files)
+            throws IOException {
+        long best = Long.MAX_VALUE;
+        long gcs = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = collections();
+            long start = System.nanoTime();
+            for (int i = 0; i < hashes.length; i++) {
+                lines.write(writer, hashes[i], files[i]);
+            }
+            writer.flush();
+            long time = System.nanoTime() - start;
+            if (time < best) {
+                best = time;
+                gcs = collections() - before;
+            }
+        }
+        System.out.printf("%-8s %6.1f ns/line, %d collections per %d lines%n",
+                name, (double) best / hashes.length, gcs, hashes.length);
+    }
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        FileHasher hasher = new FileHasher();
+        Random random = new Random(1);
+        byte[][] hashes = new byte[count][hasher.getDigestLength()];
+        String[] files = new String[count];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(hashes[i]);
+            files[i] = "/data/artifacts/build-" + i / 1000 + "/file-" + i + ".bin";
+        }
+
+        Writer former = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(),
+                StandardCharsets.UTF_8));
+        Writer current = new BufferedWriter(new OutputStreamWriter(
+                new BufferedOutputStream(OutputStream.nullOutputStream(), OUTPUT_BUFFER_SIZE),
+                StandardCharsets.UTF_8.newEncoder()), OUTPUT_BUFFER_SIZE);
+        char[] hex = new char[hasher.getHexLength()];
+        for (int i = 0; i < 2; i++) {
+            measure("format", former, (writer, hash, file) -> writer.write(String.format("%s %s" + LINE_SEPARATOR,
+                    String.format("%0" + (hash.length << 1) + "x", new BigInteger(1, hash)), file)), hashes, files);
+            measure("table", current, (writer, hash, file) -> {
+                writer.write(hex, 0, hasher.formatHex(hash, hex));
+                writer.write(' ');
+                writer.write(file);
+                writer.write(LINE_SEPARATOR);
+            }, hashes, files);
+        }
+    }
+}
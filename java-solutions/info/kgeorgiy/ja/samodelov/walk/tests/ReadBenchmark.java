@@ -0,0 +1,103 @@
+package info.kgeorgiy.ja.samodelov.walk.tests;
+
+import info.kgeorgiy.ja.samodelov.walk.FileHasher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares read throughput of {@link FileHasher} with several buffer sizes and of the former read path,
+ * which streamed files through {@link Files#newInputStream} and a {@link #STREAM_BUFFER_SIZE} heap array,
+ * on one large file and on many small files. Files are read from the page cache after the first round.
+ * <p>
+ * Usage: {@code ReadBenchmark [large file MiB [small files [algorithm]]]}
+ */
+public class ReadBenchmark {
+    private static final int STREAM_BUFFER_SIZE = 4096;
+    private static final int SMALL_FILE_SIZE = 4096;
+    private static final int[] BUFFER_SIZES = {1 << 12, 1 << 16, 1 << 20, 1 << 23};
+    private static final int ROUNDS = 3;
+
+    private interface Hasher {
+        byte[] hash(Path file) throws IOException;
+    }
+
+    private static Hasher streamHasher(String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        return file -> {
+            try (InputStream input = Files.newInputStream(file)) {
+                int size;
+                while ((size = input.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, size);
+                }
+            }
+            return digest.digest();
+        };
+    }
+
+    private static void measure(String name, Hasher hasher, List<Path> files, long bytes) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Path file : files) {
+                hasher.hash(file);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-16s %8.1f MiB/s%n", name, bytes / 1048576.0 / (best / 1e9));
+    }
+
+    private static void compare(String title, List<Path> files, long bytes, String algorithm)
+            throws IOException, NoSuchAlgorithmException {
+        System.out.printf("%s, %s, %d files, %d bytes:%n", title, algorithm, files.size(), bytes);
+        measure("stream 4 KiB", streamHasher(algorithm), files, bytes);
+        for (int bufferSize : BUFFER_SIZES) {
+            FileHasher hasher = new FileHasher(bufferSize, List.of(algorithm));
+            measure("channel " + (bufferSize >> 10) + " KiB", hasher::hash, files, bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        int largeMiB = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int smallFiles = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        String algorithm = args.length > 2 ? args[2] : FileHasher.DEFAULT_ALGORITHM;
+
+        Path root = Files.createTempDirectory("read-benchmark");
+        try {
+            Random random = new Random(1);
+            byte[] chunk = new byte[1 << 20];
+            Path large = root.resolve("large");
+            try (var output = Files.newOutputStream(large)) {
+                for (int i = 0; i < largeMiB; i++) {
+                    random.nextBytes(chunk);
+                    output.write(chunk);
+                }
+            }
+            List<Path> small = new ArrayList<>();
+            byte[] content = new byte[SMALL_FILE_SIZE];
+            for (int i = 0; i < smallFiles; i++) {
+                random.nextBytes(content);
+                small.add(Files.write(root.resolve("small" + i), content));
+            }
+
+            compare("Large file", List.of(large), (long) largeMiB << 20, algorithm);
+            compare("Small files", small, (long) smallFiles * SMALL_FILE_SIZE, algorithm);
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package info.kgeorgiy.ja.samodelov.walk.tests;
+
+import info.kgeorgiy.ja.samodelov.walk.FileHasher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares throughput of flat and tree hashing of one large file from the page cache.
+ * Tree mode hashes chunks in {@link ForkJoinPool#commonPool()}, so scaling against core count is measured
+ * by runs with different {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism}.
+ * <p>
+ * Usage: {@code TreeHashBenchmark [file MiB [chunk KiB...]]}
+ */
+public class TreeHashBenchmark {
+    private static final int ROUNDS = 3;
+
+    private static double throughput(FileHasher hasher, Path file, long bytes) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            hasher.hash(file);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return bytes / 1048576.0 / (best / 1e9);
+    }
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        int mebibytes = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        long[] chunks = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToLong(chunk -> Long.parseLong(chunk) << 10).toArray()
+                : new long[]{1 << 20, 1 << 24};
+        Path file = Files.createTempFile("tree-benchmark", ".bin");
+        try {
+            byte[] block = new byte[1 << 20];
+            Random random = new Random(1);
+            try (OutputStream output = Files.newOutputStream(file)) {
+                for (int i = 0; i < mebibytes; i++) {
+                    random.nextBytes(block);
+                    output.write(block);
+                }
+            }
+            long bytes = (long) mebibytes << 20;
+            System.out.printf("%d MiB, %d processors, common pool parallelism %d%n",
+                    mebibytes, Runtime.getRuntime().availableProcessors(), ForkJoinPool.getCommonPoolParallelism());
+            List<String> algorithms = List.of(FileHasher.DEFAULT_ALGORITHM);
+            System.out.printf("  flat             %8.1f MiB/s%n",
+                    throughput(new FileHasher(FileHasher.DEFAULT_BUFFER_SIZE, algorithms), file, bytes));
+            for (long chunk : chunks) {
+                FileHasher hasher = new FileHasher(FileHasher.DEFAULT_BUFFER_SIZE, algorithms, 0, null, chunk);
+                System.out.printf("  tree %6d KiB  %8.1f MiB/s%n", chunk >> 10, throughput(hasher, file, bytes));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
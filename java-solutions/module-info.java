@@ -6,6 +6,7 @@ open module module.samodelov {
     requires transitive info.kgeorgiy.java.advanced.crawler;
     requires transitive info.kgeorgiy.java.advanced.hello;
     requires java.compiler;
+    requires java.management;
     requires junit;
 
     exports info.kgeorgiy.ja.samodelov.arrayset;
@@ -13,4 +14,5 @@ open module module.samodelov {
     exports info.kgeorgiy.ja.samodelov.student;
     exports info.kgeorgiy.ja.samodelov.walk;
     exports info.kgeorgiy.ja.samodelov.concurrent;
+    exports info.kgeorgiy.ja.samodelov.metrics;
 }
\ No newline at end of file